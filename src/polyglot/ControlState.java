@@ -0,0 +1,121 @@
+package polyglot;
+
+/**
+ *
+ * A snapshot of the state of a TranslateAPI's RequestController, for
+ * monitoring: the size of the chunks currently sent to Google, the number of
+ * requests allowed in flight, the spacing between requests, and the
+ * measurements they were derived from.
+ *
+ * @author Elliott Bolzan
+ *
+ */
+public class ControlState {
+
+	private int characterBudget;
+	private int concurrencyLimit;
+	private int inFlight;
+	private double spacing;
+	private double latency;
+	private long requests;
+	private long characters;
+	private long throttled;
+
+	/**
+	 * Creates a ControlState.
+	 *
+	 * @param characterBudget
+	 *            the number of characters sent in a single request.
+	 * @param concurrencyLimit
+	 *            the number of requests allowed in flight.
+	 * @param inFlight
+	 *            the number of requests currently in flight.
+	 * @param spacing
+	 *            the minimum time between the start of two requests, in
+	 *            milliseconds.
+	 * @param latency
+	 *            the smoothed latency of a request, in milliseconds.
+	 * @param requests
+	 *            the number of requests that succeeded.
+	 * @param characters
+	 *            the number of characters translated.
+	 * @param throttled
+	 *            the number of requests throttled by Google.
+	 */
+	public ControlState(int characterBudget, int concurrencyLimit, int inFlight, double spacing, double latency,
+			long requests, long characters, long throttled) {
+		this.characterBudget = characterBudget;
+		this.concurrencyLimit = concurrencyLimit;
+		this.inFlight = inFlight;
+		this.spacing = spacing;
+		this.latency = latency;
+		this.requests = requests;
+		this.characters = characters;
+		this.throttled = throttled;
+	}
+
+	/**
+	 * @return the number of characters sent in a single request.
+	 */
+	public int getCharacterBudget() {
+		return characterBudget;
+	}
+
+	/**
+	 * @return the number of requests allowed in flight.
+	 */
+	public int getConcurrencyLimit() {
+		return concurrencyLimit;
+	}
+
+	/**
+	 * @return the number of requests currently in flight.
+	 */
+	public int getInFlight() {
+		return inFlight;
+	}
+
+	/**
+	 * @return the minimum time between the start of two requests, in
+	 *         milliseconds.
+	 */
+	public double getSpacing() {
+		return spacing;
+	}
+
+	/**
+	 * @return the smoothed latency of a request, in milliseconds.
+	 */
+	public double getLatency() {
+		return latency;
+	}
+
+	/**
+	 * @return the number of requests that succeeded.
+	 */
+	public long getRequests() {
+		return requests;
+	}
+
+	/**
+	 * @return the number of characters translated.
+	 */
+	public long getCharacters() {
+		return characters;
+	}
+
+	/**
+	 * @return the number of requests throttled by Google.
+	 */
+	public long getThrottled() {
+		return throttled;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d characters per request, %d/%d requests in flight, %.1f ms apart, "
+				+ "%.1f ms latency, %d requests, %d characters, %d throttled", characterBudget, inFlight,
+				concurrencyLimit, spacing, latency, requests, characters, throttled);
+	}
+
+}
@@ -0,0 +1,83 @@
+package polyglot;
+
+/**
+ *
+ * A phrase that was sent to Google's API while a similar phrase had already
+ * been translated. Reported by the TranslationMemory so that translations of
+ * near-duplicates, such as "Save file" and "Save files", can be reviewed for
+ * consistency.
+ *
+ * @author Elliott Bolzan
+ *
+ */
+public class FuzzyMatch {
+
+	private String phrase;
+	private String code;
+	private String candidate;
+	private String candidateTranslation;
+	private double similarity;
+
+	/**
+	 * Creates a FuzzyMatch.
+	 *
+	 * @param phrase
+	 *            the phrase that was sent to Google's API.
+	 * @param code
+	 *            the language code it was translated into.
+	 * @param candidate
+	 *            the similar phrase that had already been translated.
+	 * @param candidateTranslation
+	 *            the translation of the similar phrase.
+	 * @param similarity
+	 *            the similarity of the two phrases, between 0 and 1.
+	 */
+	public FuzzyMatch(String phrase, String code, String candidate, String candidateTranslation, double similarity) {
+		this.phrase = phrase;
+		this.code = code;
+		this.candidate = candidate;
+		this.candidateTranslation = candidateTranslation;
+		this.similarity = similarity;
+	}
+
+	/**
+	 * @return the phrase that was sent to Google's API.
+	 */
+	public String getPhrase() {
+		return phrase;
+	}
+
+	/**
+	 * @return the language code the phrase was translated into.
+	 */
+	public String getCode() {
+		return code;
+	}
+
+	/**
+	 * @return the similar phrase that had already been translated.
+	 */
+	public String getCandidate() {
+		return candidate;
+	}
+
+	/**
+	 * @return the translation of the similar phrase.
+	 */
+	public String getCandidateTranslation() {
+		return candidateTranslation;
+	}
+
+	/**
+	 * @return the similarity of the two phrases, between 0 and 1.
+	 */
+	public double getSimilarity() {
+		return similarity;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s [%s] ~ %s (%.2f): %s", phrase, code, candidate, similarity, candidateTranslation);
+	}
+
+}
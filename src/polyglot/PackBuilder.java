@@ -0,0 +1,89 @@
+package polyglot;
+
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import polyglot.language.Language;
+import polyglot.language.LanguagePack;
+import polyglot.language.LanguageStore;
+
+/**
+ *
+ * A command-line tool that pre-translates a Properties file into several
+ * languages, and writes the result to a single pack file.
+ *
+ * Usage: PackBuilder APIKey pathToResourceBundle output language...
+ *
+ * Languages can be given by display name ("French") or by code ("fr"). The
+ * resulting pack can be shipped with an application, and loaded at runtime
+ * using Polyglot.loadPack(String pathToPack): the application then starts
+ * multilingual, without making a single call to Google's API.
+ *
+ * @author Elliott Bolzan
+ *
+ */
+public class PackBuilder {
+
+	private Polyglot polyglot;
+
+	/**
+	 * Creates a PackBuilder.
+	 *
+	 * @param APIKey
+	 *            the Google Cloud API key.
+	 * @param pathToResourceBundle
+	 *            a path to the ResourceBundle to translate.
+	 * @throws PolyglotException
+	 *             thrown if the provided parameters are incorrect.
+	 */
+	public PackBuilder(String APIKey, String pathToResourceBundle) throws PolyglotException {
+		polyglot = new Polyglot(APIKey, pathToResourceBundle);
+	}
+
+	/**
+	 * Translates the ResourceBundle into the provided languages, and writes
+	 * the translations to a pack.
+	 *
+	 * @param output
+	 *            the path to write the pack to.
+	 * @param languages
+	 *            the languages to translate into, by display name or code.
+	 * @throws Exception
+	 *             thrown when translation fails, or the pack cannot be
+	 *             written.
+	 */
+	public void build(String output, String... languages) throws Exception {
+		LanguageStore store = polyglot.store();
+		Map<Locale, Language> translations = new LinkedHashMap<>();
+		for (String language : languages) {
+			String code = store.codeForLanguage(language);
+			if (code == null) {
+				code = language;
+			}
+			translations.put(new Locale(code), polyglot.translate(store, code));
+		}
+		LanguagePack.write(Paths.get(output), store.getOriginalLanguage(), translations);
+	}
+
+	/**
+	 * Runs the tool.
+	 *
+	 * @param args
+	 *            the API key, the path to the ResourceBundle, the output path,
+	 *            and the languages to translate into.
+	 * @throws Exception
+	 *             thrown when the pack cannot be built.
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 4) {
+			System.err.println("Usage: PackBuilder APIKey pathToResourceBundle output language...");
+			System.exit(1);
+		}
+		String[] languages = new String[args.length - 3];
+		System.arraycopy(args, 3, languages, 0, languages.length);
+		new PackBuilder(args[0], args[1]).build(args[2], languages);
+	}
+
+}
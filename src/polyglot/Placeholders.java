@@ -0,0 +1,88 @@
+package polyglot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ *
+ * Protects the placeholders in a phrase from translation.
+ *
+ * Before a phrase is sent to Google's API, its MessageFormat placeholders
+ * ("{0}", "{1,number}") and its printf-style placeholders ("%s", "%1$d") are
+ * replaced by numbered tokens. Once the phrase is translated, the tokens are
+ * replaced by the original placeholders.
+ *
+ * If the phrase is a MessageFormat pattern, holding numbered arguments ("{0}")
+ * or escaped apostrophes ("''"), its escaped apostrophes are sent as plain
+ * apostrophes. Translations are therefore plain text: apostrophes are only
+ * escaped again when a translation is used as a pattern, by LanguageStore's
+ * format method. Other braces, such as "{user}", are protected, but do not
+ * make the phrase a pattern.
+ *
+ * @author Elliott Bolzan
+ *
+ */
+class Placeholders {
+
+	private static final Pattern PLACEHOLDER = Pattern
+			.compile("\\{[^{}]*\\}|%(\\d+\\$)?[-#+0,(]*\\d*(\\.\\d+)?[a-zA-Z%]");
+	private static final Pattern ARGUMENT = Pattern.compile("\\{\\s*\\d+\\s*(,[^{}]*)?\\}");
+	private static final Pattern TOKEN = Pattern.compile("_\\s*_\\s*(\\d+)\\s*_\\s*_");
+
+	private String masked;
+	private List<String> placeholders;
+	private boolean messageFormat;
+
+	/**
+	 * Masks the placeholders in a phrase.
+	 *
+	 * @param phrase
+	 *            the phrase to be translated.
+	 */
+	Placeholders(String phrase) {
+		placeholders = new ArrayList<String>();
+		messageFormat = phrase.contains("''") || ARGUMENT.matcher(phrase).find();
+		StringBuffer buffer = new StringBuffer();
+		Matcher matcher = PLACEHOLDER.matcher(phrase);
+		while (matcher.find()) {
+			String placeholder = matcher.group();
+			matcher.appendReplacement(buffer, "__" + placeholders.size() + "__");
+			placeholders.add(placeholder);
+		}
+		matcher.appendTail(buffer);
+		masked = messageFormat ? buffer.toString().replace("''", "'") : buffer.toString();
+	}
+
+	/**
+	 * @return the phrase, with its placeholders replaced by tokens.
+	 */
+	String masked() {
+		return masked;
+	}
+
+	/**
+	 * Restores the placeholders in a translated phrase. Apostrophes are left
+	 * unescaped.
+	 *
+	 * @param translated
+	 *            the translation of the masked phrase.
+	 * @return the translation, with its original placeholders.
+	 */
+	String restore(String translated) {
+		if (placeholders.isEmpty()) {
+			return translated;
+		}
+		StringBuffer buffer = new StringBuffer();
+		Matcher matcher = TOKEN.matcher(translated);
+		while (matcher.find()) {
+			int index = Integer.parseInt(matcher.group(1));
+			String placeholder = index < placeholders.size() ? placeholders.get(index) : matcher.group();
+			matcher.appendReplacement(buffer, Matcher.quoteReplacement(placeholder));
+		}
+		matcher.appendTail(buffer);
+		return buffer.toString();
+	}
+
+}
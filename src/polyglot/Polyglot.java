@@ -1,24 +1,43 @@
 package polyglot;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.ResourceBundle;
-
-import org.apache.commons.lang3.StringEscapeUtils;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javafx.beans.binding.StringBinding;
+import javafx.beans.value.ObservableValue;
+import polyglot.events.LanguageChangeEvent;
 import polyglot.language.Language;
 import polyglot.language.LanguageManager;
+import polyglot.language.LanguagePack;
+import polyglot.language.LanguageStore;
 
 /**
  * 
  * The highest-level class in the polyglot utility.
  * 
  * The class holds references to translateAPI, which processes requests to
- * Google's Cloud API, and to manager, which caches the languages that have been
- * translated into.
+ * Google's Cloud API, to store, which caches the languages that have been
+ * translated into, and to manager, which binds those languages to JavaFX.
+ * 
+ * The manager is only created once a StringBinding is requested. Applications
+ * that do not use JavaFX, such as servers rendering text for many users at
+ * once, can look values up with get(Locale locale, String key, Case textCase)
+ * from any thread.
  * 
  * Polyglot should be called with an APIKey for Google's Cloud API, and a path
  * to a ResourceBundle. The latter is done for maximal flexibility and easier
@@ -28,16 +47,33 @@ import polyglot.language.LanguageManager;
  * In reality, the data from the ResourceBundle is cached, as are subsequent
  * translations.
  * 
+ * Further ResourceBundles can be added under a namespace, using
+ * addBundle(String namespace, String pathToResourceBundle). Their keys are
+ * then prefixed with the namespace and a colon: "inventory:Title". Such a
+ * ResourceBundle is only read, and only translated, once one of its keys is
+ * first requested.
+ * 
  * @author Elliott Bolzan
  *
  */
 public class Polyglot {
 
 	private static final String PATH_TO_EXCEPTION_MESSAGES = "polyglot/resources/PolyglotException";
+	private static final char NAMESPACE_SEPARATOR = ':';
+	private static final Logger LOGGER = Logger.getLogger(Polyglot.class.getName());
 
 	private TranslateAPI translateAPI;
+	private LanguageStore store;
+	private Map<String, String> bundlePaths;
+	private Map<String, LanguageStore> bundles;
+	private Map<LanguageStore, Set<Locale>> failedBundles;
+	private Map<Locale, String> codes;
 	private LanguageManager manager;
 	private ResourceBundle resources;
+	private volatile Locale locale;
+	private volatile boolean plainText;
+	private volatile boolean deflate;
+	private volatile TranslatabilityFilter filter;
 
 	/**
 	 * Creates a Polyglot object.
@@ -48,17 +84,76 @@ public class Polyglot {
 	 *            a path to a ResourceBundle.
 	 * @param locale
 	 *            the user's default Locale.
+	 * @param shared
+	 *            whether to share the connection to Google's Cloud API, and the
+	 *            phrases translated through it, with every other shared
+	 *            Polyglot using the same API key.
 	 * @throws PolyglotException
 	 *             an exception thrown if the provided parameters are incorrect.
 	 */
-	public Polyglot(String APIKey, String pathToResourceBundle, Locale locale) throws PolyglotException {
+	public Polyglot(String APIKey, String pathToResourceBundle, Locale locale, boolean shared)
+			throws PolyglotException {
+		this(connect(APIKey, shared), pathToResourceBundle, locale);
+	}
+
+	/**
+	 * Creates a Polyglot object that uses an existing TranslateAPI. Designed
+	 * for pointing polyglot at a server other than Google's.
+	 * 
+	 * @param translateAPI
+	 *            the TranslateAPI to send requests through.
+	 * @param pathToResourceBundle
+	 *            a path to a ResourceBundle.
+	 * @param locale
+	 *            the user's default Locale.
+	 */
+	public Polyglot(TranslateAPI translateAPI, String pathToResourceBundle, Locale locale) {
 		resources = ResourceBundle.getBundle(PATH_TO_EXCEPTION_MESSAGES);
+		this.translateAPI = translateAPI;
+		store = new LanguageStore(pathToResourceBundle, locale);
+		bundlePaths = new ConcurrentHashMap<String, String>();
+		bundles = new ConcurrentHashMap<String, LanguageStore>();
+		failedBundles = new ConcurrentHashMap<LanguageStore, Set<Locale>>();
+		codes = new ConcurrentHashMap<Locale, String>();
+		this.locale = locale;
+		filter = new TranslatabilityFilter();
+	}
+
+	/**
+	 * Creates the TranslateAPI used by a Polyglot object.
+	 * 
+	 * @param APIKey
+	 *            the Google Cloud API key.
+	 * @param shared
+	 *            whether to use the TranslateAPI shared by every Polyglot
+	 *            using the same API key.
+	 * @return the TranslateAPI.
+	 * @throws PolyglotException
+	 *             thrown when a connection cannot be established.
+	 */
+	private static TranslateAPI connect(String APIKey, boolean shared) throws PolyglotException {
 		try {
-			translateAPI = new TranslateAPI(APIKey);
+			return shared ? TranslateAPIRegistry.get(APIKey) : new TranslateAPI(APIKey);
 		} catch (Exception e) {
-			throw new PolyglotException(resources.getString("SetupFailure"), e);
+			throw new PolyglotException(ResourceBundle.getBundle(PATH_TO_EXCEPTION_MESSAGES).getString("SetupFailure"),
+					e);
 		}
-		manager = new LanguageManager(pathToResourceBundle, locale);
+	}
+
+	/**
+	 * Creates a Polyglot object.
+	 * 
+	 * @param APIKey
+	 *            the Google Cloud API key.
+	 * @param pathToResourceBundle
+	 *            a path to a ResourceBundle.
+	 * @param locale
+	 *            the user's default Locale.
+	 * @throws PolyglotException
+	 *             an exception thrown if the provided parameters are incorrect.
+	 */
+	public Polyglot(String APIKey, String pathToResourceBundle, Locale locale) throws PolyglotException {
+		this(APIKey, pathToResourceBundle, locale, false);
 	}
 
 	/**
@@ -75,6 +170,71 @@ public class Polyglot {
 		this(APIKey, pathToResourceBundle, new Locale("en"));
 	}
 
+	/**
+	 * Adds a ResourceBundle under a namespace. Its keys can then be requested
+	 * as the namespace, followed by a colon and the key: "inventory:Title".
+	 * 
+	 * Nothing is read until a key from the ResourceBundle is first requested.
+	 * The ResourceBundle is then loaded, and translated into the current
+	 * language.
+	 * 
+	 * @param namespace
+	 *            the namespace to add the ResourceBundle under.
+	 * @param pathToResourceBundle
+	 *            a path to the ResourceBundle.
+	 */
+	public void addBundle(String namespace, String pathToResourceBundle) {
+		bundlePaths.put(namespace, pathToResourceBundle);
+	}
+
+	/**
+	 * Sets whether values are sent to Google's API as plain text.
+	 * 
+	 * In plain text mode, the language of the values is taken from the default
+	 * Locale rather than detected by Google, and translations do not need to
+	 * be unescaped. Values must then be written in the default Locale's
+	 * language. By default, values are sent as HTML, and their language is
+	 * detected.
+	 * 
+	 * @param plainText
+	 *            whether to send values as plain text.
+	 */
+	public void setPlainText(boolean plainText) {
+		this.plainText = plainText;
+	}
+
+	/**
+	 * Sets whether cached languages that are not displayed are deflated.
+	 * 
+	 * Languages that are not displayed are always held in a compact form. When
+	 * deflated, they take up even less memory, but looking values up in them
+	 * with get(Locale locale, String key, Case textCase) becomes slow. By
+	 * default, they are not deflated.
+	 * 
+	 * @param deflate
+	 *            whether to deflate languages that are not displayed.
+	 */
+	public void setDeflate(boolean deflate) {
+		this.deflate = deflate;
+		store.setDeflate(deflate);
+		bundles.values().forEach((bundle) -> bundle.setDeflate(deflate));
+	}
+
+	/**
+	 * Sets the TranslatabilityFilter deciding which values are sent to
+	 * Google's API. Values it rejects, such as numbers, paths or identifiers,
+	 * are copied to every language unchanged. By default, a
+	 * TranslatabilityFilter with its built-in detectors is used.
+	 * 
+	 * The filter only applies to languages translated after it is set.
+	 * 
+	 * @param filter
+	 *            the TranslatabilityFilter to use.
+	 */
+	public void setFilter(TranslatabilityFilter filter) {
+		this.filter = filter;
+	}
+
 	/**
 	 * Set the language to a new language.
 	 * 
@@ -82,6 +242,8 @@ public class Polyglot {
 	 * returned by languages(). Naturally, Polyglot can only translate into the
 	 * languages supported by Google's API, and they must be spelled correctly.
 	 * 
+	 * Each call emits a LanguageChangeEvent, for Java Flight Recorder.
+	 * 
 	 * @param language
 	 *            the language to translate into.
 	 * @throws PolyglotException
@@ -89,36 +251,370 @@ public class Polyglot {
 	 *             is incorrect.
 	 */
 	public void setLanguage(String language) throws PolyglotException {
+		LanguageChangeEvent event = new LanguageChangeEvent();
+		event.begin();
+		try {
+			Locale newLocale = load(language, event);
+			locale = newLocale;
+			store.activate(newLocale);
+			bundles.values().forEach((bundle) -> bundle.activate(newLocale));
+			synchronized (this) {
+				if (manager != null) {
+					manager.switchTo(newLocale, true);
+				}
+			}
+		} finally {
+			event.setLanguage(language);
+			event.commit();
+		}
+	}
+
+	/**
+	 * Makes a language available, without displaying it. If the language has
+	 * not been translated into yet, it is translated and cached.
+	 * 
+	 * Only ResourceBundles that have been used so far are translated. The
+	 * others are translated once a key from them is requested.
+	 * 
+	 * Once loaded, values can be looked up in the language using
+	 * get(Locale locale, String key, Case textCase).
+	 * 
+	 * @param language
+	 *            the language to translate into.
+	 * @return the Locale for the language.
+	 * @throws PolyglotException
+	 *             throws an Exception, specifically when the provided language
+	 *             is incorrect.
+	 */
+	public Locale load(String language) throws PolyglotException {
+		return load(language, null);
+	}
+
+	/**
+	 * Makes a language available, and describes the work done in a
+	 * LanguageChangeEvent.
+	 * 
+	 * @param language
+	 *            the language to translate into.
+	 * @param event
+	 *            the LanguageChangeEvent to fill in, or null.
+	 * @return the Locale for the language.
+	 * @throws PolyglotException
+	 *             throws an Exception, specifically when the provided language
+	 *             is incorrect.
+	 */
+	private Locale load(String language, LanguageChangeEvent event) throws PolyglotException {
 		try {
-			String code = manager.codeForLanguage(language);
-			if (!manager.hasTranslated((new Locale(code)))) {
-				List<String> original = manager.toTranslate();
-				List<String> translated = translateAPI.translate(original, code);
-				save(translated, code);
-			} else {
-				manager.switchTo(new Locale(code), true);
+			String code = store.codeForLanguage(language);
+			Locale newLocale = new Locale(code);
+			codes.put(newLocale, code);
+			failedBundles.values().forEach((failed) -> failed.remove(newLocale));
+			List<LanguageStore> missing = new ArrayList<LanguageStore>();
+			if (!store.hasTranslated(newLocale)) {
+				missing.add(store);
 			}
+			for (LanguageStore bundle : bundles.values()) {
+				if (!bundle.hasTranslated(newLocale)) {
+					missing.add(bundle);
+				}
+			}
+			if (event != null && event.isEnabled()) {
+				int chunks = 0;
+				for (LanguageStore bundle : missing) {
+					chunks += translateAPI.plan(originals(bundle, translatable(bundle))).size();
+				}
+				event.setCacheHit(missing.isEmpty());
+				event.setChunks(chunks);
+			}
+			for (LanguageStore bundle : missing) {
+				bundle.cache(newLocale, translate(bundle, code));
+			}
+			return newLocale;
 		} catch (Exception e) {
 			throw new PolyglotException(String.format(resources.getString("LanguageChangeFailure"), language), e);
 		}
 	}
 
 	/**
-	 * Called when a new translation has been made. Caches the translation using
-	 * the LanguageManager.
+	 * Translates into several languages at once, without changing the
+	 * displayed language. Designed for warming caches, at deploy time or at
+	 * startup.
+	 * 
+	 * Values are broken up into chunks once, and the chunks are translated
+	 * into every language concurrently, within TranslateAPI's limit on
+	 * requests in flight. As with load(String language), only ResourceBundles
+	 * that have been used so far are translated.
+	 * 
+	 * @param languages
+	 *            the languages to translate into.
+	 * @return a Map from each language to a CompletableFuture, completed with
+	 *         the language's Locale once it has been translated, or
+	 *         exceptionally with a PolyglotException if translation failed.
+	 */
+	public Map<String, CompletableFuture<Locale>> preload(Collection<String> languages) {
+		List<LanguageStore> targets = new ArrayList<LanguageStore>();
+		targets.add(store);
+		targets.addAll(bundles.values());
+		Map<LanguageStore, List<String>> keys = new HashMap<LanguageStore, List<String>>();
+		Map<LanguageStore, List<List<String>>> plans = new LinkedHashMap<LanguageStore, List<List<String>>>();
+		for (LanguageStore bundle : targets) {
+			keys.put(bundle, translatable(bundle));
+			plans.put(bundle, translateAPI.plan(originals(bundle, keys.get(bundle))));
+		}
+		Map<String, CompletableFuture<Locale>> progress = new LinkedHashMap<String, CompletableFuture<Locale>>();
+		for (String language : languages) {
+			progress.put(language, preload(language, keys, plans));
+		}
+		return progress;
+	}
+
+	/**
+	 * Translates planned chunks into a language, and caches the results.
+	 * 
+	 * @param language
+	 *            the language to translate into.
+	 * @param keys
+	 *            the keys of the translatable values, for each LanguageStore.
+	 * @param plans
+	 *            the chunks to translate, for each LanguageStore.
+	 * @return a CompletableFuture completed once the language is cached.
+	 */
+	private CompletableFuture<Locale> preload(String language, Map<LanguageStore, List<String>> keys,
+			Map<LanguageStore, List<List<String>>> plans) {
+		String message = String.format(resources.getString("LanguageChangeFailure"), language);
+		String code = store.codeForLanguage(language);
+		if (code == null) {
+			CompletableFuture<Locale> failure = new CompletableFuture<Locale>();
+			failure.completeExceptionally(new PolyglotException(message));
+			return failure;
+		}
+		Locale target = new Locale(code);
+		codes.put(target, code);
+		List<CompletableFuture<Void>> parts = new ArrayList<CompletableFuture<Void>>();
+		plans.forEach((bundle, chunks) -> {
+			if (!bundle.hasTranslated(target)) {
+				parts.add(translateAPI.translateAsync(chunks, source(bundle), code)
+						.thenAccept((translated) -> bundle.cache(target, save(bundle, keys.get(bundle), translated))));
+			}
+		});
+		return CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[parts.size()])).handle((done, e) -> {
+			if (e != null) {
+				throw new CompletionException(new PolyglotException(message, e.getCause() != null ? e.getCause() : e));
+			}
+			return target;
+		});
+	}
+
+	/**
+	 * Translates a Properties file into a new language. Only the values
+	 * accepted by the TranslatabilityFilter are sent to Google's API.
 	 * 
+	 * @param bundle
+	 *            the LanguageStore holding the Properties file.
+	 * @param code
+	 *            the code of the language to translate into.
+	 * @return a Language holding the translated values.
+	 * @throws Exception
+	 *             thrown when translation fails.
+	 */
+	Language translate(LanguageStore bundle, String code) throws Exception {
+		List<String> keys = translatable(bundle);
+		List<String> translated = translateAPI.translate(originals(bundle, keys), source(bundle), code);
+		return save(bundle, keys, translated);
+	}
+
+	/**
+	 * @param bundle
+	 *            the LanguageStore holding a Properties file.
+	 * @return the keys whose values the TranslatabilityFilter accepts, in
+	 *         order.
+	 */
+	private List<String> translatable(LanguageStore bundle) {
+		TranslatabilityFilter current = filter;
+		List<String> keys = new ArrayList<String>();
+		for (String key : bundle.keys()) {
+			if (current.isTranslatable(key, bundle.getOriginal(key))) {
+				keys.add(key);
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * @param bundle
+	 *            the LanguageStore holding a Properties file.
+	 * @param keys
+	 *            keys from the Properties file.
+	 * @return the original values of the keys, in order.
+	 */
+	private List<String> originals(LanguageStore bundle, List<String> keys) {
+		List<String> values = new ArrayList<String>();
+		for (String key : keys) {
+			values.add(bundle.getOriginal(key));
+		}
+		return values;
+	}
+
+	/**
+	 * @param bundle
+	 *            the LanguageStore holding a Properties file.
+	 * @return the language code to send the Properties file's values in, or
+	 *         null if their language should be detected by Google.
+	 */
+	private String source(LanguageStore bundle) {
+		return plainText ? bundle.getDefaultLocale().getLanguage() : null;
+	}
+
+	/**
+	 * Translates a namespaced ResourceBundle into a Locale the first time it is
+	 * needed there. Only Locales that have been loaded are translated into,
+	 * with the language code they were loaded with: Locale alters some of
+	 * Google's codes, such as "zh-CN" or "iw".
+	 * 
+	 * If translation fails, the failure is logged and recorded: values fall
+	 * back to the original, and no further attempt is made until the language
+	 * is loaded again.
+	 * 
+	 * @param bundle
+	 *            the LanguageStore holding the ResourceBundle.
+	 * @param target
+	 *            the Locale values are requested in.
+	 */
+	private void translateLazily(LanguageStore bundle, Locale target) {
+		if (bundle.hasTranslated(target) || !store.hasTranslated(target)
+				|| failedBundles.getOrDefault(bundle, Collections.emptySet()).contains(target)) {
+			return;
+		}
+		try {
+			bundle.cache(target, translate(bundle, codes.getOrDefault(target, target.getLanguage())));
+		} catch (Exception e) {
+			failedBundles.computeIfAbsent(bundle, (failed) -> ConcurrentHashMap.newKeySet()).add(target);
+			LOGGER.log(Level.WARNING, String.format(resources.getString("BundleTranslationFailure"), target), e);
+		}
+	}
+
+	/**
+	 * @param key
+	 *            a key, possibly prefixed with a namespace.
+	 * @return the namespace of the key, or null if it belongs to the main
+	 *         ResourceBundle.
+	 */
+	private String namespace(String key) {
+		int separator = key.indexOf(NAMESPACE_SEPARATOR);
+		if (separator < 0 || !bundlePaths.containsKey(key.substring(0, separator))) {
+			return null;
+		}
+		return key.substring(0, separator);
+	}
+
+	/**
+	 * Returns the LanguageStore a key belongs to, loading its ResourceBundle
+	 * if this is the first time it is used.
+	 * 
+	 * @param key
+	 *            a key, possibly prefixed with a namespace.
+	 * @return the LanguageStore holding the key.
+	 */
+	private LanguageStore bundle(String key) {
+		String namespace = namespace(key);
+		if (namespace == null) {
+			return store;
+		}
+		return bundles.computeIfAbsent(namespace, (name) -> createBundle(name));
+	}
+
+	/**
+	 * Loads a namespaced ResourceBundle, configured like the main one.
+	 * 
+	 * @param namespace
+	 *            the namespace of the ResourceBundle.
+	 * @return a LanguageStore holding the ResourceBundle.
+	 */
+	private LanguageStore createBundle(String namespace) {
+		LanguageStore bundle = new LanguageStore(bundlePaths.get(namespace), store.getDefaultLocale());
+		bundle.setDeflate(deflate);
+		bundle.activate(locale);
+		return bundle;
+	}
+
+	/**
+	 * @param key
+	 *            a key, possibly prefixed with a namespace.
+	 * @return the key, without its namespace.
+	 */
+	private String unqualified(String key) {
+		String namespace = namespace(key);
+		return namespace == null ? key : key.substring(namespace.length() + 1);
+	}
+
+	/**
+	 * Called when a new translation has been made. Creates a Language from the
+	 * translated phrases. Values that were not translated are copied from the
+	 * original Language.
+	 * 
+	 * @param bundle
+	 *            the LanguageStore the phrases were translated from.
+	 * @param keys
+	 *            the keys of the translated phrases.
 	 * @param phrases
 	 *            the translated phrases.
-	 * @param code
-	 *            the code representing the language these phrases are in.
+	 * @return a Language holding the phrases.
 	 */
-	private void save(List<String> phrases, String code) {
+	private Language save(LanguageStore bundle, List<String> keys, List<String> phrases) {
 		Map<String, String> vocabulary = new HashMap<String, String>();
-		List<String> keys = manager.keys();
+		for (String key : bundle.keys()) {
+			vocabulary.put(key, bundle.getOriginal(key));
+		}
 		for (int i = 0; i < keys.size(); i++) {
-			vocabulary.put(keys.get(i), StringEscapeUtils.unescapeHtml4(phrases.get(i)));
+			vocabulary.put(keys.get(i), phrases.get(i));
+		}
+		return new Language(vocabulary);
+	}
+
+	/**
+	 * Loads a pre-translation pack, made by PackBuilder. The pack's languages
+	 * are cached, so switching to them requires no call to Google's API.
+	 * 
+	 * The pack is memory-mapped: its values are only read when they are
+	 * displayed.
+	 * 
+	 * @param pathToPack
+	 *            the path to the pack file.
+	 * @throws PolyglotException
+	 *             thrown when the pack cannot be read, or was built from a
+	 *             different Properties file.
+	 */
+	public void loadPack(String pathToPack) throws PolyglotException {
+		LanguagePack pack;
+		try {
+			pack = LanguagePack.open(Paths.get(pathToPack));
+		} catch (IOException e) {
+			throw new PolyglotException(String.format(resources.getString("PackLoadFailure"), pathToPack), e);
+		}
+		if (!pack.matches(store.getOriginalLanguage())) {
+			throw new PolyglotException(String.format(resources.getString("PackMismatch"), pathToPack));
 		}
-		manager.switchTo(new Locale(code), new Language(vocabulary), true);
+		pack.languages().forEach((packLocale, language) -> store.cache(packLocale, language));
+	}
+
+	/**
+	 * @return the LanguageStore holding this Polyglot's languages.
+	 */
+	LanguageStore store() {
+		return store;
+	}
+
+	/**
+	 * Returns the LanguageManager, creating it on first use. JavaFX is only
+	 * needed once this method is called.
+	 * 
+	 * @return the LanguageManager binding this Polyglot's languages to JavaFX.
+	 */
+	private synchronized LanguageManager manager() {
+		if (manager == null) {
+			manager = new LanguageManager(locale);
+		}
+		return manager;
 	}
 
 	/**
@@ -131,12 +627,40 @@ public class Polyglot {
 	 */
 	public List<String> languages() throws PolyglotException {
 		try {
-			return manager.languagesFromCodes(translateAPI.languages());
+			return store.languagesFromCodes(translateAPI.languages());
 		} catch (Exception e) {
 			throw new PolyglotException(resources.getString("LanguageRetrievalFailure"), e);
 		}
 	}
 
+	/**
+	 * Returns the phrases that were translated by Google even though a similar
+	 * phrase had already been translated, such as "Save files" after "Save
+	 * file". Their translations may be worth reviewing for consistency.
+	 * 
+	 * Phrases that only differ from a translated phrase in whitespace,
+	 * surrounding punctuation or case are never sent to Google: they are
+	 * translated locally, and are not reported.
+	 * 
+	 * @return a List<FuzzyMatch> of near-duplicate phrases.
+	 */
+	public List<FuzzyMatch> fuzzyMatches() {
+		return translateAPI.fuzzyMatches();
+	}
+
+	/**
+	 * Returns the current size of requests sent to Google, the number of
+	 * requests allowed in flight and the spacing between them, along with the
+	 * latency and throttling they were derived from. Designed for monitoring.
+	 * 
+	 * The state is shared by every Polyglot using the same TranslateAPI.
+	 * 
+	 * @return a ControlState describing the TranslateAPI's requests.
+	 */
+	public ControlState controlState() {
+		return translateAPI.controlState();
+	}
+
 	/**
 	 * Returns a StringBinding for a Properties file key. Designed to simulate
 	 * the ResourceBundle experience using the get(String key) signature.
@@ -161,13 +685,98 @@ public class Polyglot {
 	 * upper case, lower case, or title case, depending on the caller's needs.
 	 * 
 	 * @param key
-	 *            the key corresponding to the entry in the Properties file.
+	 *            the key corresponding to the entry in the Properties file,
+	 *            possibly prefixed with a namespace.
 	 * @param textCase
 	 *            the case that values will be converted to.
 	 * @return a StringBinding that updates as the language is modified.
 	 */
 	public StringBinding get(String key, Case textCase) {
-		return manager.createStringBinding(key, textCase);
+		LanguageStore bundle = bundle(key);
+		translateLazily(bundle, locale);
+		return manager().createStringBinding(bundle, unqualified(key), textCase);
+	}
+
+	/**
+	 * Returns the value for a Properties file key, in a given Locale. Does not
+	 * depend on JavaFX, and can be called from any number of threads at once.
+	 * 
+	 * If the Locale has not been loaded, the original value is returned.
+	 * 
+	 * @param locale
+	 *            the Locale to look the value up in.
+	 * @param key
+	 *            the key corresponding to the entry in the Properties file,
+	 *            possibly prefixed with a namespace.
+	 * @param textCase
+	 *            the case that the value will be converted to.
+	 * @return a String representing the value in the Locale.
+	 */
+	public String get(Locale locale, String key, Case textCase) {
+		LanguageStore bundle = bundle(key);
+		translateLazily(bundle, locale);
+		return bundle.get(locale, unqualified(key), textCase);
+	}
+
+	/**
+	 * Formats the value for a Properties file key, in the current language.
+	 * The value is used as a MessageFormat pattern: "{0} files saved". Each
+	 * pattern is compiled once per language, and reused on subsequent calls.
+	 * 
+	 * Placeholders are protected from Google's API during translation.
+	 * 
+	 * @param key
+	 *            the key corresponding to the entry in the Properties file,
+	 *            possibly prefixed with a namespace.
+	 * @param arguments
+	 *            the arguments to format the pattern with.
+	 * @return a String representing the formatted value.
+	 */
+	public String format(String key, Object... arguments) {
+		return format(locale, key, Case.UNCHANGED, arguments);
+	}
+
+	/**
+	 * Formats the value for a Properties file key, in a given Locale. Does not
+	 * depend on JavaFX, and can be called from any number of threads at once.
+	 * 
+	 * @param locale
+	 *            the Locale to look the pattern up in.
+	 * @param key
+	 *            the key corresponding to the entry in the Properties file,
+	 *            possibly prefixed with a namespace.
+	 * @param textCase
+	 *            the case that the value will be converted to.
+	 * @param arguments
+	 *            the arguments to format the pattern with.
+	 * @return a String representing the formatted value in the Locale.
+	 */
+	public String format(Locale locale, String key, Case textCase, Object... arguments) {
+		LanguageStore bundle = bundle(key);
+		translateLazily(bundle, locale);
+		return bundle.format(locale, unqualified(key), textCase, arguments);
+	}
+
+	/**
+	 * Returns a StringBinding for a parameterized Properties file key. The
+	 * value is used as a MessageFormat pattern, and formatted with the values
+	 * of the arguments. The binding updates when the language is modified, and
+	 * when any of the arguments change.
+	 * 
+	 * @param key
+	 *            the key corresponding to the entry in the Properties file,
+	 *            possibly prefixed with a namespace.
+	 * @param textCase
+	 *            the case that values will be converted to.
+	 * @param arguments
+	 *            the observable arguments to format the pattern with.
+	 * @return a StringBinding that updates as the language or the arguments
+	 *         are modified.
+	 */
+	public StringBinding getFormatted(String key, Case textCase, ObservableValue<?>... arguments) {
+		LanguageStore bundle = bundle(key);
+		translateLazily(bundle, locale);
+		return manager().createFormattedBinding(bundle, unqualified(key), textCase, arguments);
 	}
 
 	/**
@@ -175,12 +784,13 @@ public class Polyglot {
 	 * parameter.
 	 * 
 	 * @param key
-	 *            the key from the Properties file.
+	 *            the key from the Properties file, possibly prefixed with a
+	 *            namespace.
 	 * @return a String representing the original version of the value for the
 	 *         key.
 	 */
 	public String getOriginal(String key) {
-		return manager.getOriginal(key);
+		return bundle(key).getOriginal(unqualified(key));
 	}
 
 }
\ No newline at end of file
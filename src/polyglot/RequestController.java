@@ -0,0 +1,188 @@
+package polyglot;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * Decides how much text a TranslateAPI sends to Google in a single request,
+ * how many requests it keeps in flight, and how far apart it starts them,
+ * from the latency and throttling it observes.
+ *
+ * Each follows an additive increase, multiplicative decrease scheme:
+ *
+ * 1. A request answered within TARGET_LATENCY_MILLIS grows the character
+ * budget by a fixed step, and allows one more request per second. Once as
+ * many requests as the concurrency limit have succeeded in a row, the limit
+ * grows by one.
+ *
+ * 2. A slower request shrinks the character budget and the concurrency limit
+ * by a quarter. A request rejected as too large shrinks the budget to half
+ * the request's size, and the budget never reaches that size again. A request
+ * throttled by Google halves the concurrency limit and doubles the spacing
+ * between requests.
+ *
+ * Slow and throttled requests decrease the limits at most once per round
+ * trip: requests allowed before the last decrease were sent under the
+ * previous limits, and do not decrease them again.
+ *
+ * The controller thus settles on the largest requests Google answers promptly,
+ * sent as concurrently and as often as its quotas allow.
+ *
+ * @author Elliott Bolzan
+ *
+ */
+class RequestController {
+
+	static final int MAX_CONCURRENCY = 16;
+	private static final int INITIAL_CONCURRENCY = 4;
+	private static final int INITIAL_BUDGET = 600;
+	private static final int MIN_BUDGET = 100;
+	private static final int MAX_BUDGET = 5000;
+	private static final int BUDGET_STEP = 100;
+	private static final double LATENCY_DECREASE = 0.75;
+	private static final double THROTTLE_DECREASE = 0.5;
+	private static final long TARGET_LATENCY_MILLIS = 1500;
+	private static final double SMOOTHING = 0.2;
+	private static final long MIN_SPACING_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+	private static final long MAX_SPACING_NANOS = TimeUnit.SECONDS.toNanos(1);
+	private static final double RATE_STEP = 1;
+
+	private int budget;
+	private int ceiling;
+	private int limit;
+	private int inFlight;
+	private int successes;
+	private long spacing;
+	private long nextStart;
+	private long lastDecrease;
+	private double latency;
+	private long requests;
+	private long characters;
+	private long throttled;
+
+	/**
+	 * Creates a RequestController.
+	 */
+	RequestController() {
+		budget = INITIAL_BUDGET;
+		ceiling = MAX_BUDGET;
+		limit = INITIAL_CONCURRENCY;
+		lastDecrease = System.nanoTime();
+	}
+
+	/**
+	 * Waits until a request can be sent without exceeding the concurrency
+	 * limit, nor following the previous request too closely, and counts it as
+	 * in flight.
+	 *
+	 * @return the time at which the request was allowed, in nanoseconds.
+	 * @throws InterruptedException
+	 *             thrown when the thread is interrupted while waiting.
+	 */
+	synchronized long acquire() throws InterruptedException {
+		while (true) {
+			long delay = nextStart - System.nanoTime();
+			if (inFlight >= limit) {
+				wait();
+			} else if (delay > 0) {
+				TimeUnit.NANOSECONDS.timedWait(this, delay);
+			} else {
+				break;
+			}
+		}
+		long start = System.nanoTime();
+		nextStart = start + spacing;
+		inFlight++;
+		return start;
+	}
+
+	/**
+	 * Counts a request as no longer in flight.
+	 */
+	synchronized void release() {
+		inFlight--;
+		notifyAll();
+	}
+
+	/**
+	 * @return the number of characters to send in a single request.
+	 */
+	synchronized int budget() {
+		return budget;
+	}
+
+	/**
+	 * Records a successful request.
+	 *
+	 * @param sent
+	 *            the number of characters sent.
+	 * @param nanos
+	 *            the time Google took to answer, in nanoseconds.
+	 * @param allowed
+	 *            the time at which the request was allowed, in nanoseconds.
+	 */
+	synchronized void succeeded(int sent, long nanos, long allowed) {
+		double millis = nanos / 1e6;
+		latency = requests == 0 ? millis : latency + SMOOTHING * (millis - latency);
+		requests++;
+		characters += sent;
+		if (millis > TARGET_LATENCY_MILLIS) {
+			successes = 0;
+			if (allowed - lastDecrease >= 0) {
+				lastDecrease = System.nanoTime();
+				budget = Math.max(MIN_BUDGET, (int) (budget * LATENCY_DECREASE));
+				limit = Math.max(1, (int) (limit * LATENCY_DECREASE));
+			}
+			return;
+		}
+		if (spacing > 0) {
+			long faster = (long) (1e9 / (1e9 / spacing + RATE_STEP));
+			spacing = faster < MIN_SPACING_NANOS ? 0 : faster;
+		}
+		if (sent * 2 >= budget) {
+			budget = Math.min(ceiling, budget + BUDGET_STEP);
+		}
+		if (++successes >= limit) {
+			limit = Math.min(MAX_CONCURRENCY, limit + 1);
+			successes = 0;
+		}
+	}
+
+	/**
+	 * Records a request throttled by Google.
+	 *
+	 * @param allowed
+	 *            the time at which the request was allowed, in nanoseconds.
+	 */
+	synchronized void throttled(long allowed) {
+		throttled++;
+		if (allowed - lastDecrease < 0) {
+			return;
+		}
+		lastDecrease = System.nanoTime();
+		limit = Math.max(1, (int) (limit * THROTTLE_DECREASE));
+		spacing = Math.min(MAX_SPACING_NANOS, Math.max(MIN_SPACING_NANOS, spacing * 2));
+		successes = 0;
+	}
+
+	/**
+	 * Records a request rejected by Google for carrying too many characters.
+	 * The budget never grows back to the rejected size.
+	 *
+	 * @param sent
+	 *            the number of characters sent.
+	 */
+	synchronized void rejected(int sent) {
+		ceiling = Math.max(MIN_BUDGET, Math.min(ceiling, sent - 1));
+		budget = Math.max(MIN_BUDGET, Math.min(budget, sent / 2));
+		successes = 0;
+	}
+
+	/**
+	 * @return a snapshot of the controller's state.
+	 */
+	synchronized ControlState state() {
+		return new ControlState(budget, limit, inFlight, spacing / 1e6, latency, requests, characters, throttled);
+	}
+
+}
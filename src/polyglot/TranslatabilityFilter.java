@@ -0,0 +1,128 @@
+package polyglot;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+
+/**
+ *
+ * Decides which values of a Properties file are sent to Google's API. Values
+ * that are not translatable are copied to every language unchanged: they are
+ * neither billed nor corrupted by translation.
+ *
+ * A value is not translatable when its key matches one of the key patterns,
+ * when the value matches one of the value patterns, or when it is recognized
+ * by one of the built-in detectors:
+ *
+ * 1. Empty values, or values made of whitespace and punctuation only.
+ *
+ * 2. Numeric values, such as "42", "3.14", "50%" or "12:30".
+ *
+ * 3. URLs, e-mail addresses, paths and file names, such as
+ * "https://example.com", "images/icon.png" or "style.css".
+ *
+ * 4. Identifiers, such as "MAX_SIZE", "backgroundColor",
+ * "com.example.Main" or "#ff0000".
+ *
+ * The built-in detectors are enabled by default. Patterns are Java regular
+ * expressions, and must match the entire key or value.
+ *
+ * @author Elliott Bolzan
+ *
+ */
+public class TranslatabilityFilter {
+
+	private static final Pattern BLANK = Pattern.compile("[\\s\\p{Punct}]*");
+	private static final Pattern NUMERIC = Pattern.compile("[-+(]?[\\d\\s.,:/%)]*\\d[\\d\\s.,:/%)]*");
+	private static final Pattern URL = Pattern.compile("([a-zA-Z][\\w+.-]*://|mailto:|www\\.)\\S+|\\S+@\\S+\\.\\w+");
+	private static final Pattern PATH = Pattern.compile("(~|\\.{1,2})?/\\S*|\\S*\\\\\\S*|\\S+/\\S*\\.\\w{1,5}"
+			+ "|[\\w-]+\\.(png|gif|jpe?g|svg|ico|css|fxml|xml|json|properties|txt|html?|wav|mp3|mp4)",
+			Pattern.CASE_INSENSITIVE);
+	private static final Pattern IDENTIFIER = Pattern.compile("\\w*_\\w*|[a-z]+([A-Z][a-z\\d]*)+"
+			+ "|[a-zA-Z_$][\\w$]*(\\.[a-zA-Z_$][\\w$]*)+|#[\\da-fA-F]{3,8}");
+
+	private List<Pattern> keyPatterns;
+	private List<Pattern> valuePatterns;
+	private volatile boolean detect;
+
+	/**
+	 * Creates a TranslatabilityFilter, with the built-in detectors enabled and
+	 * no patterns.
+	 */
+	public TranslatabilityFilter() {
+		keyPatterns = new CopyOnWriteArrayList<Pattern>();
+		valuePatterns = new CopyOnWriteArrayList<Pattern>();
+		detect = true;
+	}
+
+	/**
+	 * Excludes the values of matching keys from translation.
+	 *
+	 * @param regex
+	 *            a regular expression matching entire keys, such as
+	 *            ".*\\.icon".
+	 * @return this TranslatabilityFilter.
+	 */
+	public TranslatabilityFilter addKeyPattern(String regex) {
+		keyPatterns.add(Pattern.compile(regex));
+		return this;
+	}
+
+	/**
+	 * Excludes matching values from translation.
+	 *
+	 * @param regex
+	 *            a regular expression matching entire values, such as
+	 *            "v\\d+(\\.\\d+)*".
+	 * @return this TranslatabilityFilter.
+	 */
+	public TranslatabilityFilter addValuePattern(String regex) {
+		valuePatterns.add(Pattern.compile(regex));
+		return this;
+	}
+
+	/**
+	 * Sets whether the built-in detectors are used.
+	 *
+	 * @param detect
+	 *            whether empty, numeric, URL or path, and identifier-like
+	 *            values are excluded from translation.
+	 * @return this TranslatabilityFilter.
+	 */
+	public TranslatabilityFilter setDetectors(boolean detect) {
+		this.detect = detect;
+		return this;
+	}
+
+	/**
+	 * @param key
+	 *            a key from the Properties file.
+	 * @param value
+	 *            the key's value.
+	 * @return whether the value should be sent to Google's API.
+	 */
+	public boolean isTranslatable(String key, String value) {
+		for (Pattern pattern : keyPatterns) {
+			if (pattern.matcher(key).matches()) {
+				return false;
+			}
+		}
+		for (Pattern pattern : valuePatterns) {
+			if (pattern.matcher(value).matches()) {
+				return false;
+			}
+		}
+		return !detect || !isDetected(value.trim());
+	}
+
+	/**
+	 * @param value
+	 *            a value, without surrounding whitespace.
+	 * @return whether one of the built-in detectors recognizes the value.
+	 */
+	private boolean isDetected(String value) {
+		return BLANK.matcher(value).matches() || NUMERIC.matcher(value).matches() || URL.matcher(value).matches()
+				|| PATH.matcher(value).matches() || IDENTIFIER.matcher(value).matches();
+	}
+
+}
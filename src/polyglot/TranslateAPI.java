@@ -1,24 +1,55 @@
 package polyglot;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.lang3.StringEscapeUtils;
 
 import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
+import com.google.api.client.googleapis.json.GoogleJsonError.ErrorInfo;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.HttpResponseException;
 import com.google.api.client.http.HttpTransport;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.jackson2.JacksonFactory;
 import com.google.api.services.translate.Translate;
+import com.google.api.services.translate.TranslateRequest;
 import com.google.api.services.translate.TranslateRequestInitializer;
 import com.google.api.services.translate.model.LanguagesResource;
 import com.google.api.services.translate.model.TranslationsListResponse;
 
+import polyglot.events.TranslationRequestEvent;
+
 /**
  * 
  * This class interacts with Google's Cloud API directly.
  * 
  * Two different types of request are made: a translation request and a possible
  * languages request. These requests respectively live in translate(List<String>
- * phrases, String code) and List<String> languages().
+ * phrases, String source, String code) and List<String> languages().
+ * 
+ * Translated phrases are kept in a TranslationMemory, so that a phrase, or a
+ * variant differing only in whitespace, punctuation or case, is only ever sent
+ * to Google once per source language, format and destination language. A
+ * TranslateAPI can safely be shared by several Polyglot objects, and called
+ * from several threads: phrases that are already being translated by another
+ * caller are waited for rather than requested again.
+ * 
+ * The size of each request, the number of requests in flight and their pace
+ * are adjusted by a RequestController from the latency and throttling
+ * Google's API exhibits. Throttled requests are retried after a delay.
  * 
  * TranslateAPI throws PolyglotExceptions, letting the caller determine how to
  * handle them.
@@ -27,10 +58,22 @@ import com.google.api.services.translate.model.TranslationsListResponse;
  */
 public class TranslateAPI {
 
-	private static final int MAX_CHARACTERS_PER_REQUEST = 600;
+	private static final int MAX_ATTEMPTS = 5;
+	private static final long BACKOFF_MILLIS = 250;
+	private static final int PAYLOAD_TOO_LARGE = 413;
+	private static final int TOO_MANY_REQUESTS = 429;
+	private static final int FORBIDDEN = 403;
+	private static final List<String> RATE_LIMIT_REASONS = Arrays.asList("rateLimitExceeded",
+			"userRateLimitExceeded");
 	private static final String APPLICATION_NAME = "VoogaSalad";
+	private static final String TEXT_FORMAT = "text";
 	private String APIKey;
+	private String rootUrl;
 	private Translate translate;
+	private RequestController controller;
+	private ExecutorService executor;
+	private TranslationMemory memory;
+	private Map<String, CompletableFuture<String>> inFlight;
 
 	/**
 	 * Creates a TranslateAPI.
@@ -43,7 +86,33 @@ public class TranslateAPI {
 	 *             interrupted.
 	 */
 	public TranslateAPI(String APIKey) throws Exception {
+		this(APIKey, Translate.DEFAULT_ROOT_URL);
+	}
+
+	/**
+	 * Creates a TranslateAPI that sends its requests to a server other than
+	 * Google's, such as a local stand-in used for testing.
+	 * 
+	 * @param APIKey
+	 *            the Google Cloud API key (necessary for interacting with the
+	 *            API).
+	 * @param rootUrl
+	 *            the root URL of the server, such as "http://localhost:8080/".
+	 * @throws Exception
+	 *             the exception thrown when initialization is somehow
+	 *             interrupted.
+	 */
+	public TranslateAPI(String APIKey, String rootUrl) throws Exception {
 		this.APIKey = APIKey;
+		this.rootUrl = rootUrl;
+		controller = new RequestController();
+		executor = Executors.newFixedThreadPool(RequestController.MAX_CONCURRENCY, (runnable) -> {
+			Thread thread = new Thread(runnable, APPLICATION_NAME + "-translate");
+			thread.setDaemon(true);
+			return thread;
+		});
+		memory = new TranslationMemory();
+		inFlight = new ConcurrentHashMap<String, CompletableFuture<String>>();
 		setup();
 	}
 
@@ -59,61 +128,405 @@ public class TranslateAPI {
 		HttpTransport httpTransport = GoogleNetHttpTransport.newTrustedTransport();
 		JsonFactory jsonFactory = JacksonFactory.getDefaultInstance();
 		translate = new Translate.Builder(httpTransport, jsonFactory, null).setApplicationName(APPLICATION_NAME)
-				.setTranslateRequestInitializer(KEY_INITIALIZER).build();
+				.setRootUrl(rootUrl).setTranslateRequestInitializer(KEY_INITIALIZER).build();
 	}
 
 	/**
-	 * Translates phrases from any given language (auto-detected by Google's
-	 * API) to a destination language, specific by the parameter code.
+	 * Translates phrases to a destination language, specific by the parameter
+	 * code.
+	 * 
+	 * If a source language is provided, phrases are sent as plain text in that
+	 * language: Google neither detects their language nor escapes its response
+	 * as HTML. Otherwise, phrases are sent as HTML, their language is
+	 * auto-detected, and translations are unescaped.
 	 * 
-	 * Breaks up the requests into chunks Google can process.
+	 * Phrases already in the destination language are returned unchanged.
+	 * Phrases found in the TranslationMemory are not sent again, and phrases
+	 * currently being translated by another caller are waited for. Of several
+	 * phrases differing only in whitespace, surrounding punctuation or case,
+	 * only the first is sent. The remaining phrases are broken up into chunks
+	 * Google can process.
 	 * 
 	 * @param phrases
 	 *            the phrases to be translated.
+	 * @param source
+	 *            the language code of the phrases, or null to send HTML and
+	 *            have Google detect the language.
 	 * @param code
 	 *            the language code to translate into.
 	 * @return a List<String> representing translated phrases.
 	 * @throws Exception
 	 *             thrown when translation fails.
 	 */
-	protected List<String> translate(List<String> phrases, String code) throws Exception {
+	protected List<String> translate(List<String> phrases, String source, String code) throws Exception {
+		if (code.equalsIgnoreCase(source)) {
+			return new ArrayList<String>(phrases);
+		}
+		Map<String, String> translated = new HashMap<String, String>();
+		Map<String, CompletableFuture<String>> waiting = new HashMap<String, CompletableFuture<String>>();
+		Map<String, CompletableFuture<String>> claimed = new HashMap<String, CompletableFuture<String>>();
+		Set<String> claimedForms = new HashSet<String>();
+		List<String> variants = new ArrayList<String>();
+		for (String phrase : new LinkedHashSet<String>(phrases)) {
+			String remembered = memory.lookup(phrase, source, code);
+			if (remembered != null) {
+				translated.put(phrase, remembered);
+				continue;
+			}
+			if (!claimedForms.add(memory.normalize(phrase))) {
+				variants.add(phrase);
+				continue;
+			}
+			CompletableFuture<String> future = new CompletableFuture<String>();
+			CompletableFuture<String> existing = inFlight.putIfAbsent(inFlightKey(phrase, source, code), future);
+			remembered = memory.lookup(phrase, source, code);
+			if (existing != null) {
+				waiting.put(phrase, existing);
+			} else if (remembered != null) {
+				translated.put(phrase, remembered);
+				future.complete(remembered);
+				inFlight.remove(inFlightKey(phrase, source, code));
+			} else {
+				claimed.put(phrase, future);
+			}
+		}
+		request(claimed, translated, source, code);
+		for (String phrase : claimed.keySet()) {
+			memory.suggest(phrase, source, code);
+		}
+		for (Map.Entry<String, CompletableFuture<String>> entry : waiting.entrySet()) {
+			translated.put(entry.getKey(), await(entry.getValue()));
+		}
+		for (String variant : variants) {
+			translated.put(variant, memory.lookup(variant, source, code));
+		}
 		List<String> translations = new ArrayList<String>();
-		List<String> toTranslate = new ArrayList<String>();
+		for (String phrase : phrases) {
+			translations.add(translated.get(phrase));
+		}
+		return translations;
+	}
+
+	/**
+	 * Translates chunks of phrases in the background. Chunks are sent
+	 * concurrently, within the concurrency limit shared by every caller of
+	 * this TranslateAPI.
+	 * 
+	 * @param chunks
+	 *            the chunks to be translated, as planned by plan(List<String>
+	 *            phrases).
+	 * @param source
+	 *            the language code of the phrases, or null to send HTML and
+	 *            have Google detect the language.
+	 * @param code
+	 *            the language code to translate into.
+	 * @return a CompletableFuture holding the translated phrases, in order.
+	 */
+	protected CompletableFuture<List<String>> translateAsync(List<List<String>> chunks, String source, String code) {
+		List<CompletableFuture<List<String>>> parts = new ArrayList<CompletableFuture<List<String>>>();
+		for (List<String> chunk : chunks) {
+			parts.add(CompletableFuture.supplyAsync(() -> {
+				try {
+					return translate(chunk, source, code);
+				} catch (Exception e) {
+					throw new CompletionException(e);
+				}
+			}, executor));
+		}
+		return CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[parts.size()])).thenApply((done) -> {
+			List<String> translations = new ArrayList<String>();
+			parts.forEach((part) -> translations.addAll(part.join()));
+			return translations;
+		});
+	}
+
+	/**
+	 * @return the near-duplicate phrases that were sent to Google's API while
+	 *         a similar phrase had already been translated, for review.
+	 */
+	protected List<FuzzyMatch> fuzzyMatches() {
+		return memory.fuzzyMatches();
+	}
+
+	/**
+	 * @return the current size of requests and concurrency limit, and the
+	 *         measurements they were derived from, for monitoring.
+	 */
+	public ControlState controlState() {
+		return controller.state();
+	}
+
+	/**
+	 * Sends the phrases claimed by the caller to Google's API, records the
+	 * results in the TranslationMemory, and hands them to the callers waiting
+	 * on them.
+	 * 
+	 * @param claimed
+	 *            the phrases to be sent, and the futures other callers wait on.
+	 * @param translated
+	 *            the Map to add the caller's translated phrases to.
+	 * @param source
+	 *            the language code of the phrases, or null.
+	 * @param code
+	 *            the language code to translate into.
+	 * @throws Exception
+	 *             thrown when translation fails.
+	 */
+	private void request(Map<String, CompletableFuture<String>> claimed, Map<String, String> translated,
+			String source, String code) throws Exception {
+		List<String> phrases = new ArrayList<String>(claimed.keySet());
+		try {
+			List<String> translations = chunked(phrases, source, code);
+			for (int i = 0; i < phrases.size(); i++) {
+				translated.put(phrases.get(i), translations.get(i));
+				memory.record(phrases.get(i), source, code, translations.get(i));
+				claimed.get(phrases.get(i)).complete(translations.get(i));
+			}
+		} catch (Exception e) {
+			claimed.values().forEach((future) -> future.completeExceptionally(e));
+			throw e;
+		} finally {
+			phrases.forEach((phrase) -> inFlight.remove(inFlightKey(phrase, source, code)));
+		}
+	}
+
+	/**
+	 * Waits for a phrase being translated by another caller.
+	 * 
+	 * @param future
+	 *            the future holding the phrase's translation.
+	 * @return the translated phrase.
+	 * @throws Exception
+	 *             the Exception thrown by the other caller, if its translation
+	 *             failed.
+	 */
+	private String await(CompletableFuture<String> future) throws Exception {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * @param phrase
+	 *            the phrase being translated.
+	 * @param source
+	 *            the language code of the phrase, or null.
+	 * @param code
+	 *            the language code being translated into.
+	 * @return the key identifying the phrase's translation while in flight.
+	 */
+	private String inFlightKey(String phrase, String source, String code) {
+		return TranslationMemory.direction(source, code) + '\u0000' + phrase;
+	}
+
+	/**
+	 * Breaks up phrases into chunks Google can process, each holding at most
+	 * the RequestController's current character budget. A plan can be reused
+	 * to translate the same phrases into several languages.
+	 * 
+	 * @param phrases
+	 *            the phrases to be translated.
+	 * @return a List of chunks, each small enough for a single request.
+	 */
+	protected List<List<String>> plan(List<String> phrases) {
+		List<List<String>> chunks = new ArrayList<List<String>>();
+		List<String> chunk = new ArrayList<String>();
+		int budget = controller.budget();
 		int characters = 0;
 		for (String string : phrases) {
-			if (characters + string.length() >= MAX_CHARACTERS_PER_REQUEST) {
-				updateTranslated(translations, toTranslate, code);
+			if (characters + string.length() >= budget && !chunk.isEmpty()) {
+				chunks.add(chunk);
 				characters = 0;
-				toTranslate.clear();
+				chunk = new ArrayList<String>();
 			}
 			characters += string.length();
-			toTranslate.add(string);
+			chunk.add(string);
+		}
+		if (!chunk.isEmpty()) {
+			chunks.add(chunk);
+		}
+		return chunks;
+	}
+
+	/**
+	 * Breaks up phrases into chunks Google can process, and translates them.
+	 * 
+	 * @param phrases
+	 *            the phrases to be translated.
+	 * @param source
+	 *            the language code of the phrases, or null.
+	 * @param code
+	 *            the language code to translate into.
+	 * @return a List<String> representing translated phrases.
+	 * @throws Exception
+	 *             thrown when translation fails.
+	 */
+	private List<String> chunked(List<String> phrases, String source, String code) throws Exception {
+		List<String> translations = new ArrayList<String>();
+		for (List<String> toTranslate : plan(phrases)) {
+			updateTranslated(translations, toTranslate, source, code);
 		}
-		updateTranslated(translations, toTranslate, code);
 		return translations;
 	}
 
 	/**
 	 * Where the actual translation takes place. A call to Google's Cloud API is
-	 * made.
+	 * made, once the RequestController allows it. Chunks Google rejects as too
+	 * large are split in two.
+	 * 
+	 * Placeholders are masked before the call, and restored after it. Without
+	 * a source language, Google returns HTML: translations are then unescaped
+	 * before being added.
 	 * 
 	 * @param destination
 	 *            the List<String> to add translations too.
 	 * @param toTranslate
 	 *            the List<String> to translate.
+	 * @param source
+	 *            the language code of the phrases, or null.
 	 * @param code
 	 *            the language identifier.
 	 * @return an updated List<String> of translated values.
 	 * @throws Exception
 	 *             throws an error when the request fails.
 	 */
-	private List<String> updateTranslated(List<String> destination, List<String> toTranslate, String code)
-			throws Exception {
-		TranslationsListResponse result = translate.translations().list(toTranslate, code).execute();
-		result.getTranslations().forEach((entry) -> destination.add(entry.getTranslatedText()));
+	private List<String> updateTranslated(List<String> destination, List<String> toTranslate, String source,
+			String code) throws Exception {
+		List<Placeholders> placeholders = new ArrayList<Placeholders>();
+		List<String> masked = new ArrayList<String>();
+		for (String phrase : toTranslate) {
+			Placeholders phrasePlaceholders = new Placeholders(phrase);
+			placeholders.add(phrasePlaceholders);
+			masked.add(phrasePlaceholders.masked());
+		}
+		TranslationsListResponse result;
+		try {
+			result = send(masked, source, code);
+		} catch (HttpResponseException e) {
+			if (e.getStatusCode() != PAYLOAD_TOO_LARGE || toTranslate.size() < 2) {
+				throw e;
+			}
+			controller.rejected(characters(masked));
+			int half = toTranslate.size() / 2;
+			updateTranslated(destination, toTranslate.subList(0, half), source, code);
+			return updateTranslated(destination, toTranslate.subList(half, toTranslate.size()), source, code);
+		}
+		for (int i = 0; i < result.getTranslations().size(); i++) {
+			String translated = result.getTranslations().get(i).getTranslatedText();
+			if (source == null) {
+				translated = StringEscapeUtils.unescapeHtml4(translated);
+			}
+			destination.add(placeholders.get(i).restore(translated));
+		}
 		return destination;
 	}
 
+	/**
+	 * Sends a translation request, and emits a TranslationRequestEvent for it.
+	 * 
+	 * @param masked
+	 *            the phrases to translate, placeholders masked.
+	 * @param source
+	 *            the language code of the phrases, or null.
+	 * @param code
+	 *            the language identifier.
+	 * @return Google's response.
+	 * @throws Exception
+	 *             thrown when the request fails.
+	 */
+	private TranslationsListResponse send(List<String> masked, String source, String code) throws Exception {
+		TranslationRequestEvent event = new TranslationRequestEvent();
+		event.begin();
+		try {
+			Translate.Translations.List request = translate.translations().list(masked, code);
+			if (source != null) {
+				request.setFormat(TEXT_FORMAT).setSource(source);
+			}
+			TranslationsListResponse result = execute(request, characters(masked));
+			event.setSucceeded(true);
+			return result;
+		} finally {
+			event.setCharacters(characters(masked));
+			event.setSegments(masked.size());
+			event.setCode(code);
+			event.commit();
+		}
+	}
+
+	/**
+	 * Sends a single request to Google's Cloud API, once the RequestController
+	 * allows it, and reports its latency. Throttled requests are retried,
+	 * waiting twice as long before each attempt.
+	 * 
+	 * @param request
+	 *            the request to send.
+	 * @param characters
+	 *            the number of characters to translate in the request.
+	 * @return Google's response.
+	 * @throws Exception
+	 *             thrown when the request fails, or is still throttled after
+	 *             MAX_ATTEMPTS attempts.
+	 */
+	private <T> T execute(TranslateRequest<T> request, int characters) throws Exception {
+		for (int attempt = 1;; attempt++) {
+			long allowed = controller.acquire();
+			try {
+				long start = System.nanoTime();
+				T result = request.execute();
+				controller.succeeded(characters, System.nanoTime() - start, allowed);
+				return result;
+			} catch (HttpResponseException e) {
+				if (!isThrottled(e) || attempt == MAX_ATTEMPTS) {
+					throw e;
+				}
+				controller.throttled(allowed);
+			} finally {
+				controller.release();
+			}
+			Thread.sleep(BACKOFF_MILLIS << (attempt - 1));
+		}
+	}
+
+	/**
+	 * @param e
+	 *            an error returned by Google's Cloud API.
+	 * @return whether the error signals that requests are sent too quickly.
+	 */
+	private boolean isThrottled(HttpResponseException e) {
+		if (e.getStatusCode() == TOO_MANY_REQUESTS) {
+			return true;
+		}
+		if (e.getStatusCode() != FORBIDDEN || !(e instanceof GoogleJsonResponseException)
+				|| ((GoogleJsonResponseException) e).getDetails() == null
+				|| ((GoogleJsonResponseException) e).getDetails().getErrors() == null) {
+			return false;
+		}
+		for (ErrorInfo error : ((GoogleJsonResponseException) e).getDetails().getErrors()) {
+			if (RATE_LIMIT_REASONS.contains(error.getReason())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param phrases
+	 *            the phrases in a request.
+	 * @return the number of characters they hold.
+	 */
+	private int characters(List<String> phrases) {
+		int characters = 0;
+		for (String phrase : phrases) {
+			characters += phrase.length();
+		}
+		return characters;
+	}
+
 	/**
 	 * Provides the caller with a list of languages that can be translated into.
 	 * This list is obtained directly from Google's Cloud API.
@@ -124,7 +537,7 @@ public class TranslateAPI {
 	 */
 	protected List<String> languages() throws Exception {
 		List<String> codes = new ArrayList<String>();
-		List<LanguagesResource> response = translate.languages().list().execute().getLanguages();
+		List<LanguagesResource> response = execute(translate.languages().list(), 0).getLanguages();
 		response.forEach((resource) -> codes.add(resource.getLanguage()));
 		return codes;
 	}
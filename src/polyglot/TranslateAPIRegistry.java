@@ -0,0 +1,42 @@
+package polyglot;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 
+ * A JVM-wide registry of TranslateAPI objects, keyed by API key.
+ * 
+ * Polyglot objects created with the shared flag obtain their TranslateAPI
+ * from this registry. They then share a single connection to Google's Cloud
+ * API, a single limit on requests in flight, and a single cache of translated
+ * phrases: a phrase used by several bundles is only translated once.
+ * 
+ * @author Elliott Bolzan
+ *
+ */
+class TranslateAPIRegistry {
+
+	private static final Map<String, TranslateAPI> APIS = new HashMap<String, TranslateAPI>();
+
+	/**
+	 * Returns the TranslateAPI shared by all callers using an API key, creating
+	 * it on first use.
+	 * 
+	 * @param APIKey
+	 *            the Google Cloud API key.
+	 * @return the shared TranslateAPI for the key.
+	 * @throws Exception
+	 *             the exception thrown when initialization is somehow
+	 *             interrupted.
+	 */
+	static synchronized TranslateAPI get(String APIKey) throws Exception {
+		TranslateAPI translateAPI = APIS.get(APIKey);
+		if (translateAPI == null) {
+			translateAPI = new TranslateAPI(APIKey);
+			APIS.put(APIKey, translateAPI);
+		}
+		return translateAPI;
+	}
+
+}
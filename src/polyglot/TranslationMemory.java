@@ -0,0 +1,329 @@
+package polyglot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ *
+ * Remembers every phrase translated through a TranslateAPI, so that only
+ * genuinely new text is sent to Google's API.
+ *
+ * Translations are remembered per source language and format: a phrase sent
+ * as plain English text is kept apart from the same phrase sent as HTML, its
+ * language detected by Google. A phrase is served from memory when:
+ *
+ * 1. The exact same phrase has already been translated into the language.
+ *
+ * 2. A phrase differing only in whitespace, surrounding punctuation or case has
+ * been translated: "Save file:" is served from "Save file". The stored
+ * translation is adapted to the new phrase's surrounding whitespace,
+ * punctuation and case. Placeholders, such as "{user}" or "%s", are left out
+ * of the comparison and of the adaptation: phrases with different
+ * placeholders are never served from one another.
+ *
+ * Other phrases are sent to Google. Their sources are indexed by trigram:
+ * when a new phrase closely resembles one already translated, a FuzzyMatch is
+ * reported for review, but the phrase is still translated by Google.
+ *
+ * Similar phrases are looked for without holding the memory's lock, and only
+ * among the phrases sharing one of the new phrase's rarest trigrams: a phrase
+ * sharing none of them cannot be similar enough. Phrases whose length rules
+ * out a close match are skipped, and at most MAX_POSTINGS indexed phrases are
+ * examined per lookup.
+ *
+ * @author Elliott Bolzan
+ *
+ */
+class TranslationMemory {
+
+	private static final double FUZZY_THRESHOLD = 0.7;
+	private static final int GRAM_LENGTH = 3;
+	private static final int MAX_POSTINGS = 200;
+	private static final String HTML_FORMAT = "html";
+	private static final Pattern DECORATION = Pattern.compile("^([\\s\\p{Punct}&&[^_]]*)(.*?)([\\s\\p{Punct}&&[^_]]*)$",
+			Pattern.DOTALL);
+
+	private Map<String, Map<String, String>> exact;
+	private Map<String, Map<String, String>> normalized;
+	private Map<String, Set<String>> index;
+	private Map<String, Integer> gramCounts;
+	private Map<String, FuzzyMatch> fuzzyMatches;
+
+	/**
+	 * Creates an empty TranslationMemory.
+	 */
+	TranslationMemory() {
+		exact = new HashMap<String, Map<String, String>>();
+		normalized = new HashMap<String, Map<String, String>>();
+		index = new ConcurrentHashMap<String, Set<String>>();
+		gramCounts = new ConcurrentHashMap<String, Integer>();
+		fuzzyMatches = new LinkedHashMap<String, FuzzyMatch>();
+	}
+
+	/**
+	 * Looks a phrase up in memory.
+	 *
+	 * @param phrase
+	 *            the phrase to be translated.
+	 * @param source
+	 *            the language code of the phrase, or null if it is sent as
+	 *            HTML.
+	 * @param code
+	 *            the language code to translate into.
+	 * @return the translation, or null if the phrase must be sent to Google.
+	 */
+	synchronized String lookup(String phrase, String source, String code) {
+		String direction = direction(source, code);
+		String translation = exact.getOrDefault(direction, Collections.emptyMap()).get(phrase);
+		if (translation != null) {
+			return translation;
+		}
+		String original = normalized.getOrDefault(direction, Collections.emptyMap()).get(normalize(phrase));
+		if (original == null) {
+			return null;
+		}
+		translation = adapt(original, exact.get(direction).get(original), phrase);
+		exact.get(direction).put(phrase, translation);
+		return translation;
+	}
+
+	/**
+	 * Records a translation made by Google.
+	 *
+	 * @param phrase
+	 *            the phrase that was translated.
+	 * @param source
+	 *            the language code of the phrase, or null if it was sent as
+	 *            HTML.
+	 * @param code
+	 *            the language code it was translated into.
+	 * @param translation
+	 *            the translation.
+	 */
+	synchronized void record(String phrase, String source, String code, String translation) {
+		String direction = direction(source, code);
+		exact.computeIfAbsent(direction, (key) -> new HashMap<>()).put(phrase, translation);
+		normalized.computeIfAbsent(direction, (key) -> new HashMap<>()).putIfAbsent(normalize(phrase), phrase);
+		if (!gramCounts.containsKey(phrase)) {
+			Set<String> grams = grams(phrase);
+			gramCounts.put(phrase, grams.size());
+			for (String gram : grams) {
+				index.computeIfAbsent(gram, (key) -> ConcurrentHashMap.newKeySet()).add(phrase);
+			}
+		}
+	}
+
+	/**
+	 * Looks for phrases similar to a phrase translated by Google, and reports
+	 * the closest one as a FuzzyMatch. Variants of the phrase itself are not
+	 * reported.
+	 *
+	 * @param phrase
+	 *            the phrase translated by Google.
+	 * @param source
+	 *            the language code of the phrase, or null if it was sent as
+	 *            HTML.
+	 * @param code
+	 *            the language code it is translated into.
+	 */
+	void suggest(String phrase, String source, String code) {
+		String direction = direction(source, code);
+		String form = normalize(phrase);
+		Set<String> grams = grams(phrase);
+		if (grams.isEmpty()) {
+			return;
+		}
+		String best = null;
+		String bestTranslation = null;
+		double bestSimilarity = FUZZY_THRESHOLD;
+		for (String candidate : candidates(grams)) {
+			int total = grams.size() + gramCounts.get(candidate);
+			int missing = grams.size() - (int) Math.ceil(bestSimilarity * total / 2);
+			int shared = 0;
+			for (String gram : grams) {
+				if (index.getOrDefault(gram, Collections.emptySet()).contains(candidate)) {
+					shared++;
+				} else if (--missing < 0) {
+					break;
+				}
+			}
+			double similarity = 2.0 * shared / total;
+			if (similarity < bestSimilarity || shared == grams.size() && normalize(candidate).equals(form)) {
+				continue;
+			}
+			String translation = translation(direction, candidate);
+			if (translation != null) {
+				best = candidate;
+				bestTranslation = translation;
+				bestSimilarity = similarity;
+			}
+		}
+		if (best == null) {
+			return;
+		}
+		synchronized (fuzzyMatches) {
+			FuzzyMatch reverse = fuzzyMatches.get(direction + '\u0000' + best);
+			if (reverse == null || !reverse.getCandidate().equals(phrase)) {
+				fuzzyMatches.put(direction + '\u0000' + phrase,
+						new FuzzyMatch(phrase, code, best, bestTranslation, bestSimilarity));
+			}
+		}
+	}
+
+	/**
+	 * Finds the indexed phrases that may be similar to a phrase. A phrase
+	 * similar enough shares at least one of the phrase's rarest trigrams, and
+	 * has a comparable number of trigrams: only the indexed phrases sharing
+	 * one of the rarest trigrams are examined, and those whose number of
+	 * trigrams rules out a close match are skipped.
+	 *
+	 * @param grams
+	 *            the trigrams of the phrase.
+	 * @return the phrases that may be similar to the phrase.
+	 */
+	private Set<String> candidates(Set<String> grams) {
+		int minimum = (int) Math.ceil(FUZZY_THRESHOLD * grams.size() / (2 - FUZZY_THRESHOLD));
+		int maximum = (int) Math.floor((2 - FUZZY_THRESHOLD) * grams.size() / FUZZY_THRESHOLD);
+		Map<String, Set<String>> postings = new HashMap<String, Set<String>>();
+		Map<String, Integer> frequencies = new HashMap<String, Integer>();
+		for (String gram : grams) {
+			postings.put(gram, index.getOrDefault(gram, Collections.emptySet()));
+			frequencies.put(gram, postings.get(gram).size());
+		}
+		List<String> rarest = new ArrayList<String>(grams);
+		rarest.sort(Comparator.comparing(frequencies::get));
+		Set<String> candidates = new HashSet<String>();
+		int scanned = 0;
+		for (String gram : rarest.subList(0, grams.size() - minimum + 1)) {
+			for (String candidate : postings.get(gram)) {
+				if (scanned++ >= MAX_POSTINGS) {
+					return candidates;
+				}
+				int count = gramCounts.getOrDefault(candidate, 0);
+				if (count >= minimum && count <= maximum) {
+					candidates.add(candidate);
+				}
+			}
+		}
+		return candidates;
+	}
+
+	/**
+	 * @param direction
+	 *            the source language, format and destination language.
+	 * @param phrase
+	 *            a phrase.
+	 * @return the phrase's translation, or null if it has not been translated.
+	 */
+	private synchronized String translation(String direction, String phrase) {
+		return exact.getOrDefault(direction, Collections.emptyMap()).get(phrase);
+	}
+
+	/**
+	 * @return the FuzzyMatches reported so far.
+	 */
+	List<FuzzyMatch> fuzzyMatches() {
+		synchronized (fuzzyMatches) {
+			return new ArrayList<FuzzyMatch>(fuzzyMatches.values());
+		}
+	}
+
+	/**
+	 * @param source
+	 *            the language code of the phrases, or null if they are sent as
+	 *            HTML.
+	 * @param code
+	 *            the language code to translate into.
+	 * @return the key under which translations from the source language and
+	 *         format into the language are remembered.
+	 */
+	static String direction(String source, String code) {
+		return (source == null ? HTML_FORMAT : source) + '\u0000' + code;
+	}
+
+	/**
+	 * Normalizes a phrase: surrounding whitespace and punctuation are removed,
+	 * inner whitespace is collapsed, and letters outside placeholders are
+	 * lower-cased.
+	 *
+	 * @param phrase
+	 *            the phrase to normalize.
+	 * @return the normalized phrase.
+	 */
+	String normalize(String phrase) {
+		Placeholders placeholders = new Placeholders(phrase);
+		Matcher matcher = DECORATION.matcher(placeholders.masked());
+		matcher.matches();
+		return placeholders.restore(matcher.group(2).replaceAll("\\s+", " ").toLowerCase(Locale.ROOT));
+	}
+
+	/**
+	 * Adapts the translation of a phrase to a variant of that phrase.
+	 *
+	 * @param source
+	 *            the phrase that was translated.
+	 * @param translation
+	 *            its translation.
+	 * @param variant
+	 *            a phrase normalizing to the same text as the source.
+	 * @return the translation, with the variant's surrounding whitespace and
+	 *         punctuation, and its case. Placeholders are left unchanged.
+	 */
+	private String adapt(String source, String translation, String variant) {
+		Placeholders placeholders = new Placeholders(translation);
+		Matcher sourceParts = DECORATION.matcher(new Placeholders(source).masked());
+		Matcher variantParts = DECORATION.matcher(new Placeholders(variant).masked());
+		Matcher translationParts = DECORATION.matcher(placeholders.masked());
+		sourceParts.matches();
+		variantParts.matches();
+		translationParts.matches();
+		String core = translationParts.group(2);
+		String variantCore = variantParts.group(2);
+		if (isUpperCase(variantCore) && !isUpperCase(sourceParts.group(2))) {
+			core = core.toUpperCase();
+		} else if (variantCore.equals(variantCore.toLowerCase()) && !sourceParts.group(2).equals(
+				sourceParts.group(2).toLowerCase())) {
+			core = core.toLowerCase();
+		}
+		String prefix = sourceParts.group(1).equals(variantParts.group(1)) ? translationParts.group(1)
+				: variantParts.group(1);
+		String suffix = sourceParts.group(3).equals(variantParts.group(3)) ? translationParts.group(3)
+				: variantParts.group(3);
+		return placeholders.restore(prefix + core + suffix);
+	}
+
+	/**
+	 * @param text
+	 *            the text to check.
+	 * @return whether the text contains letters, all of them upper case.
+	 */
+	private boolean isUpperCase(String text) {
+		return text.equals(text.toUpperCase()) && !text.equals(text.toLowerCase());
+	}
+
+	/**
+	 * @param phrase
+	 *            the phrase to index.
+	 * @return the trigrams of the normalized phrase.
+	 */
+	private Set<String> grams(String phrase) {
+		String padded = " " + normalize(phrase) + " ";
+		Set<String> grams = new HashSet<String>();
+		for (int i = 0; i + GRAM_LENGTH <= padded.length(); i++) {
+			grams.add(padded.substring(i, i + GRAM_LENGTH));
+		}
+		return grams;
+	}
+
+}
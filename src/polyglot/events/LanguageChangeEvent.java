@@ -0,0 +1,59 @@
+package polyglot.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ *
+ * A Java Flight Recorder event, emitted for every call to
+ * Polyglot.setLanguage(String language). Its duration spans the call,
+ * including any translation it requires.
+ *
+ * @author Elliott Bolzan
+ *
+ */
+@Name("polyglot.LanguageChange")
+@Label("Language Change")
+@Category("polyglot")
+@Description("A call to Polyglot.setLanguage")
+public class LanguageChangeEvent extends Event {
+
+	@Label("Language")
+	private String language;
+
+	@Label("Cache Hit")
+	@Description("Whether every loaded ResourceBundle was already translated into the language")
+	private boolean cacheHit;
+
+	@Label("Chunks")
+	@Description("The number of chunks planned for the values that had to be translated")
+	private int chunks;
+
+	/**
+	 * @param language
+	 *            the language switched to.
+	 */
+	public void setLanguage(String language) {
+		this.language = language;
+	}
+
+	/**
+	 * @param cacheHit
+	 *            whether the language was already cached.
+	 */
+	public void setCacheHit(boolean cacheHit) {
+		this.cacheHit = cacheHit;
+	}
+
+	/**
+	 * @param chunks
+	 *            the number of chunks planned for translation.
+	 */
+	public void setChunks(int chunks) {
+		this.chunks = chunks;
+	}
+
+}
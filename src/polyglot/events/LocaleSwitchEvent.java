@@ -0,0 +1,47 @@
+package polyglot.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ *
+ * A Java Flight Recorder event, emitted whenever a LanguageManager changes the
+ * Locale its bindings display. Its duration is the time spent on the thread
+ * changing the Locale, normally the JavaFX Application Thread.
+ *
+ * @author Elliott Bolzan
+ *
+ */
+@Name("polyglot.LocaleSwitch")
+@Label("Locale Switch")
+@Category("polyglot")
+@Description("A change of the Locale displayed by JavaFX bindings")
+public class LocaleSwitchEvent extends Event {
+
+	@Label("Locale")
+	private String locale;
+
+	@Label("Bindings Recomputed")
+	@Description("The number of bindings recomputed while the Locale changed")
+	private int bindings;
+
+	/**
+	 * @param locale
+	 *            the Locale switched to.
+	 */
+	public void setLocale(String locale) {
+		this.locale = locale;
+	}
+
+	/**
+	 * @param bindings
+	 *            the number of bindings recomputed.
+	 */
+	public void setBindings(int bindings) {
+		this.bindings = bindings;
+	}
+
+}
@@ -0,0 +1,68 @@
+package polyglot.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ *
+ * A Java Flight Recorder event, emitted for every translation request sent to
+ * Google's Cloud API by a TranslateAPI. Its duration spans the request,
+ * including retries of throttled attempts.
+ *
+ * @author Elliott Bolzan
+ *
+ */
+@Name("polyglot.TranslationRequest")
+@Label("Translation Request")
+@Category("polyglot")
+@Description("A request sent to Google's Cloud API")
+public class TranslationRequestEvent extends Event {
+
+	@Label("Characters")
+	private int characters;
+
+	@Label("Segments")
+	private int segments;
+
+	@Label("Target Code")
+	private String code;
+
+	@Label("Succeeded")
+	private boolean succeeded;
+
+	/**
+	 * @param characters
+	 *            the number of characters sent.
+	 */
+	public void setCharacters(int characters) {
+		this.characters = characters;
+	}
+
+	/**
+	 * @param segments
+	 *            the number of phrases sent.
+	 */
+	public void setSegments(int segments) {
+		this.segments = segments;
+	}
+
+	/**
+	 * @param code
+	 *            the language code translated into.
+	 */
+	public void setCode(String code) {
+		this.code = code;
+	}
+
+	/**
+	 * @param succeeded
+	 *            whether Google returned translations.
+	 */
+	public void setSucceeded(boolean succeeded) {
+		this.succeeded = succeeded;
+	}
+
+}
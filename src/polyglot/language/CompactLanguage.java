@@ -0,0 +1,219 @@
+package polyglot.language;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ *
+ * A Language held in a compact form, used for languages that are cached but
+ * not displayed.
+ *
+ * Values identical to the original Language's are not stored at all. The
+ * others are either kept in a ValueArena shared with other languages, costing
+ * one int per key, or deflated into a single block of bytes private to this
+ * language. Deflated languages are the smallest, but each lookup inflates the
+ * block: they should be inflated before being read frequently.
+ *
+ * @author Elliott Bolzan
+ *
+ */
+public class CompactLanguage extends Language {
+
+	private static final int ORIGINAL = -1;
+	private static final int MISSING = -2;
+
+	private Language original;
+	private List<String> keys;
+	private Map<String, Integer> keyIndex;
+	private ValueArena arena;
+	private int[] offsets;
+	private byte[] deflated;
+
+	/**
+	 * Creates a CompactLanguage from a Language.
+	 *
+	 * @param language
+	 *            the Language to compact.
+	 * @param original
+	 *            the original Language, whose values are not stored again.
+	 * @param keys
+	 *            the keys of the original Language, in order.
+	 * @param keyIndex
+	 *            the position of each key in keys.
+	 * @param arena
+	 *            the ValueArena to store values in.
+	 * @param deflate
+	 *            whether to deflate the values into a private block rather
+	 *            than store them in the arena.
+	 */
+	protected CompactLanguage(Language language, Language original, List<String> keys, Map<String, Integer> keyIndex,
+			ValueArena arena, boolean deflate) {
+		this.original = original;
+		this.keys = keys;
+		this.keyIndex = keyIndex;
+		this.arena = arena;
+		offsets = new int[keys.size()];
+		for (int i = 0; i < keys.size(); i++) {
+			String value = language.get(keys.get(i));
+			if (value == null) {
+				offsets[i] = MISSING;
+			} else if (value.equals(original.get(keys.get(i)))) {
+				offsets[i] = ORIGINAL;
+			} else {
+				offsets[i] = deflate ? i : arena.add(value);
+			}
+		}
+		if (deflate) {
+			deflated = deflate(language);
+		}
+	}
+
+	@Override
+	protected String get(String key) {
+		Integer index = keyIndex.get(key);
+		if (index == null) {
+			return null;
+		}
+		if (deflated != null) {
+			return decode(deflated, index);
+		}
+		return value(index, offsets[index]);
+	}
+
+	@Override
+	protected List<String> keys() {
+		return new ArrayList<String>(keys);
+	}
+
+	@Override
+	protected List<String> values() {
+		return inflate().values();
+	}
+
+	/**
+	 * Restores the Language to its full form, for display. Values identical to
+	 * the original Language's share the original's String instances.
+	 *
+	 * @return a Language holding the same values.
+	 */
+	protected Language inflate() {
+		Map<String, String> vocabulary = new LinkedHashMap<String, String>();
+		List<String> values = deflated != null ? decodeAll(deflated) : null;
+		for (int i = 0; i < keys.size(); i++) {
+			String value = values != null ? values.get(i) : value(i, offsets[i]);
+			if (value != null) {
+				vocabulary.put(keys.get(i), value);
+			}
+		}
+		return new Language(vocabulary);
+	}
+
+	/**
+	 * @param index
+	 *            the position of a key.
+	 * @param offset
+	 *            the offset of its value, or a marker.
+	 * @return the value for the key.
+	 */
+	private String value(int index, int offset) {
+		if (offset == ORIGINAL) {
+			return original.get(keys.get(index));
+		}
+		if (offset == MISSING) {
+			return null;
+		}
+		return arena.get(offset);
+	}
+
+	/**
+	 * Deflates the values that differ from the original Language's.
+	 *
+	 * @param language
+	 *            the Language being compacted.
+	 * @return the deflated block.
+	 */
+	private byte[] deflate(Language language) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream output = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+			for (int i = 0; i < keys.size(); i++) {
+				if (offsets[i] == i) {
+					byte[] value = language.get(keys.get(i)).getBytes(StandardCharsets.UTF_8);
+					output.writeInt(value.length);
+					output.write(value);
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Reads a single value from the deflated block.
+	 *
+	 * @param block
+	 *            the deflated block.
+	 * @param index
+	 *            the position of the key to read.
+	 * @return the value for the key.
+	 */
+	private String decode(byte[] block, int index) {
+		if (offsets[index] < 0) {
+			return value(index, offsets[index]);
+		}
+		try (DataInputStream input = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(block)))) {
+			for (int i = 0; i < index; i++) {
+				if (offsets[i] >= 0) {
+					input.skipBytes(input.readInt());
+				}
+			}
+			return readValue(input);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Reads every value from the deflated block.
+	 *
+	 * @param block
+	 *            the deflated block.
+	 * @return the values, in key order.
+	 */
+	private List<String> decodeAll(byte[] block) {
+		List<String> values = new ArrayList<String>();
+		try (DataInputStream input = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(block)))) {
+			for (int i = 0; i < keys.size(); i++) {
+				values.add(offsets[i] >= 0 ? readValue(input) : value(i, offsets[i]));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return values;
+	}
+
+	/**
+	 * @param input
+	 *            a stream positioned at a value.
+	 * @return the value.
+	 * @throws IOException
+	 *             thrown when the block is corrupted.
+	 */
+	private String readValue(DataInputStream input) throws IOException {
+		byte[] value = new byte[input.readInt()];
+		input.readFully(value);
+		return new String(value, StandardCharsets.UTF_8);
+	}
+
+}
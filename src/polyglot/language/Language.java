@@ -1,6 +1,8 @@
 package polyglot.language;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -11,9 +13,12 @@ import java.util.Map;
  * As convenience, it provides get(String key), List<String> keys(), and
  * List<String> values() methods.
  * 
- * This design is necessary to remove clutter from LanguageManager. If it were
- * not used, LanguageManager would need to contain a Map of Maps, which would
- * not be very legible or conceptually clear.
+ * This design is necessary to remove clutter from LanguageStore. If it were
+ * not used, LanguageStore would need to contain a Map of Maps, which would not
+ * be very legible or conceptually clear.
+ * 
+ * A Language is immutable: the vocabulary is copied on creation, so that the
+ * Language can be read from several threads at once.
  * 
  * @author Elliott Bolzan
  *
@@ -30,7 +35,31 @@ public class Language {
 	 *            vocabulary.
 	 */
 	public Language(Map<String, String> vocabulary) {
-		this.vocabulary = vocabulary;
+		this.vocabulary = Collections.unmodifiableMap(new LinkedHashMap<String, String>(vocabulary));
+	}
+
+	/**
+	 * Creates a Language without a vocabulary Map. Reserved for subclasses
+	 * that store their values elsewhere, and override get(String key), keys()
+	 * and values() accordingly.
+	 */
+	protected Language() {
+	}
+
+	/**
+	 * Creates a Language that takes ownership of a vocabulary Map instead of
+	 * copying it. Reserved for loaders that build the Map themselves, and never
+	 * modify it afterwards.
+	 * 
+	 * @param vocabulary
+	 *            the key/value pairs that are part of this language's
+	 *            vocabulary, in order.
+	 * @return a Language backed by the Map.
+	 */
+	static Language adopt(Map<String, String> vocabulary) {
+		Language language = new Language();
+		language.vocabulary = Collections.unmodifiableMap(vocabulary);
+		return language;
 	}
 
 	/**
@@ -1,80 +1,56 @@
 package polyglot.language;
 
-import java.util.Enumeration;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Locale;
-import java.util.Map;
-import java.util.ResourceBundle;
 
 import javafx.application.Platform;
+import javafx.beans.Observable;
 import javafx.beans.binding.Bindings;
 import javafx.beans.binding.StringBinding;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.value.ObservableValue;
 import polyglot.Case;
+import polyglot.events.LocaleSwitchEvent;
 
 /**
- * This class manages polyglot's state concerning languages.
- * 
- * It holds references to: a Map of languages that have been translated into;
- * the default Locale; the original Language supplied by the user; and a tool
- * for converting between language codes and their display names.
- * 
+ * This class binds polyglot's languages to JavaFX.
+ *
+ * It holds a reference to the Locale currently displayed by the user
+ * interface. Bindings created by the LanguageManager read their values from a
+ * LanguageStore, and are updated whenever that Locale changes. A single
+ * LanguageManager can serve bindings from several LanguageStores.
+ *
+ * The LanguageManager is optional: applications that do not use JavaFX can
+ * read from LanguageStores directly.
+ *
+ * Each change of Locale emits a LocaleSwitchEvent, for Java Flight Recorder,
+ * counting the bindings recomputed during the change.
+ *
  * @author Elliott Bolzan
  *
  */
 public class LanguageManager {
 
-	private Map<Locale, Language> languages;
-	private Locale defaultLocale;
 	private ObjectProperty<Locale> locale;
-	private Language originalLanguage;
-	private LanguageCodes languageCodes;
+	private int recomputed;
 
 	/**
 	 * Create a LanguageManager.
-	 * 
-	 * A listener is added to the locale: whenever the locale is changed, bound
-	 * Strings will automatically be updated to the new language.
-	 * 
-	 * @param propertiesPath
-	 *            the path to the caller's default Properties file.
-	 * @param defaultLocale
-	 *            the caller's default Locale.
+	 *
+	 * Whenever the locale is changed, bound Strings will automatically be
+	 * updated to the new language.
+	 *
+	 * @param initialLocale
+	 *            the Locale to display initially.
 	 */
-	public LanguageManager(String propertiesPath, Locale defaultLocale) {
-		this.defaultLocale = defaultLocale;
-		languages = new HashMap<Locale, Language>();
-		languageCodes = new LanguageCodes();
-		locale = new SimpleObjectProperty<>();
-		locale.addListener((observable, oldValue, newValue) -> Locale.setDefault(newValue));
-		languageFromBundle(propertiesPath);
-	}
-
-	/**
-	 * Creates a Language from the user-supplied ResourceBundle. This allows the
-	 * LanguageManager to ignore ResourceBundles once and for all.
-	 * 
-	 * @param propertiesPath
-	 *            the path to the caller's default ResourceBundle.
-	 */
-	private void languageFromBundle(String propertiesPath) {
-		Map<String, String> vocabulary = new HashMap<String, String>();
-		ResourceBundle resources = ResourceBundle.getBundle(propertiesPath);
-		Enumeration<String> keys = resources.getKeys();
-		while (keys.hasMoreElements()) {
-			String key = keys.nextElement();
-			vocabulary.put(key, resources.getString(key));
-		}
-		originalLanguage = new Language(vocabulary);
-		switchTo(defaultLocale, originalLanguage, false);
+	public LanguageManager(Locale initialLocale) {
+		locale = new SimpleObjectProperty<>(initialLocale);
 	}
 
 	/**
 	 * Switches the Locale to a new value, triggering a language change for
 	 * values that are bound to polyglot.
-	 * 
+	 *
 	 * @param newLocale
 	 *            the Locale to switch to.
 	 */
@@ -83,119 +59,82 @@ public class LanguageManager {
 			Platform.runLater(new Runnable() {
 				@Override
 				public void run() {
-					locale.set(newLocale);
+					set(newLocale);
 				}
 			});
 		} else {
-			locale.set(newLocale);
+			set(newLocale);
 		}
 	}
 
 	/**
-	 * Switches the Locale to a new value, triggering a language change for
-	 * values that are bound to polyglot.
-	 * 
-	 * In addition, caches the new Language so it does not have to be translated
-	 * again in the future, if the user chooses to switch back to it.
-	 * 
+	 * Sets the Locale, and emits a LocaleSwitchEvent describing the change.
+	 * Bindings that are recomputed later, when next read, are not counted.
+	 *
 	 * @param newLocale
-	 * @param language
-	 */
-	public void switchTo(Locale newLocale, Language language, boolean threaded) {
-		languages.put(newLocale, language);
-		switchTo(newLocale, threaded);
-	}
-
-	/**
-	 * Provides the caller with a localized version of the value for the key
-	 * parameter.
-	 * 
-	 * @param key
-	 *            the key from the Properties file.
-	 * @param textCase
-	 *            the case the text should be returned in.
-	 * @return a String representing a localized version of the value for the
-	 *         key.
-	 */
-	public String get(String key, Case textCase) {
-		Language language = languages.get(locale.get());
-		String value = language.get(key);
-		return textCase.convert(value);
-	}
-
-	/**
-	 * Provides the caller with the original version of the value for the key
-	 * parameter.
-	 * 
-	 * @param key
-	 *            the key from the Properties file.
-	 * @return a String representing the original version of the value for the
-	 *         key.
+	 *            the Locale to switch to.
 	 */
-	public String getOriginal(String key) {
-		return originalLanguage.get(key);
+	private void set(Locale newLocale) {
+		LocaleSwitchEvent event = new LocaleSwitchEvent();
+		int before = recomputed;
+		event.begin();
+		locale.set(newLocale);
+		event.end();
+		if (event.shouldCommit()) {
+			event.setLocale(newLocale.toString());
+			event.setBindings(recomputed - before);
+			event.commit();
+		}
 	}
 
 	/**
 	 * Creates a StringBinding that will be updated when the Locale is changed.
 	 * Any user-facing text-property can bind to the returned value, and be
 	 * updated when the language is changed.
-	 * 
+	 *
+	 * @param store
+	 *            the LanguageStore to read values from.
 	 * @param key
 	 *            the key to bind to.
 	 * @param textCase
 	 *            the case of the value to be returned.
 	 * @return a StringBinding that updates as the language does.
 	 */
-	public StringBinding createStringBinding(String key, Case textCase) {
-		return Bindings.createStringBinding(() -> get(key, textCase), locale);
-	}
-
-	/**
-	 * @return a List<String> representing the keys of the user's default
-	 *         Properties file.
-	 */
-	public List<String> keys() {
-		return originalLanguage.keys();
-	}
-
-	/**
-	 * @return a List<String> representing the values of the user's default
-	 *         Properties file. These are the values that are to be translated.
-	 */
-	public List<String> toTranslate() {
-		return originalLanguage.values();
-	}
-
-	/**
-	 * @param locale
-	 *            the specified Locale.
-	 * @return whether polyglot has already translated into that Locale or not.
-	 */
-	public boolean hasTranslated(Locale locale) {
-		return languages.containsKey(locale);
+	public StringBinding createStringBinding(LanguageStore store, String key, Case textCase) {
+		return Bindings.createStringBinding(() -> {
+			recomputed++;
+			return store.get(locale.get(), key, textCase);
+		}, locale);
 	}
 
 	/**
-	 * Returns a language code for a given language display name.
-	 * 
-	 * @param language
-	 *            the String representing a given language's display name.
-	 * @return the language's code in Google's Translate API.
-	 */
-	public String codeForLanguage(String language) {
-		return languageCodes.codeForLanguage(language);
-	}
-
-	/**
-	 * Returns language display names from language codes.
-	 * 
-	 * @param codes
-	 *            the codes for which to find language names.
-	 * @return a List<String> of language display names.
+	 * Creates a StringBinding for a MessageFormat pattern. The binding is
+	 * updated when the Locale is changed, and when any of the arguments change.
+	 *
+	 * @param store
+	 *            the LanguageStore to read patterns from.
+	 * @param key
+	 *            the key to bind to.
+	 * @param textCase
+	 *            the case of the value to be returned.
+	 * @param arguments
+	 *            the arguments to format the pattern with.
+	 * @return a StringBinding that updates as the language and the arguments
+	 *         do.
 	 */
-	public List<String> languagesFromCodes(List<String> codes) {
-		return languageCodes.languagesFromCodes(codes);
+	public StringBinding createFormattedBinding(LanguageStore store, String key, Case textCase,
+			ObservableValue<?>... arguments) {
+		Observable[] dependencies = new Observable[arguments.length + 1];
+		dependencies[0] = locale;
+		System.arraycopy(arguments, 0, dependencies, 1, arguments.length);
+		return Bindings.createStringBinding(() -> {
+			recomputed++;
+			Object[] values = new Object[arguments.length];
+			for (int i = 0; i < arguments.length; i++) {
+				values[i] = arguments[i].getValue();
+			}
+			return store.format(locale.get(), key, textCase, values);
+		}, dependencies);
 	}
 
 }
@@ -0,0 +1,320 @@
+package polyglot.language;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ *
+ * This class reads and writes pre-translation packs: single binary files that
+ * hold the translations of one source bundle into several languages.
+ *
+ * A pack is laid out as follows:
+ *
+ * 1. A header: a magic number, a format version, the SHA-256 hash of the
+ * source bundle, the number of keys, and the number of languages.
+ *
+ * 2. The keys: one int per key, pointing into the string table.
+ *
+ * 3. The languages: for each language, an int pointing to its code, followed
+ * by one int per key, pointing to its value.
+ *
+ * 4. The string table: every distinct String, stored once, as a length
+ * followed by UTF-8 bytes.
+ *
+ * Packs are opened by memory-mapping the file. The Languages served by a pack
+ * read their values straight from the mapped buffer, meaning a cached language
+ * costs no heap until one of its values is read.
+ *
+ * @author Elliott Bolzan
+ *
+ */
+public class LanguagePack {
+
+	private static final int MAGIC = 0x50474C54;
+	private static final int VERSION = 1;
+	private static final int HASH_LENGTH = 32;
+	private static final int HEADER_LENGTH = 4 + 4 + HASH_LENGTH + 4 + 4;
+
+	private ByteBuffer buffer;
+	private byte[] sourceHash;
+	private List<String> keys;
+	private Map<String, Integer> keyIndex;
+	private Map<Locale, Language> languages;
+
+	/**
+	 * Creates a LanguagePack from a buffer holding a pack. Use open(Path path)
+	 * to obtain one.
+	 *
+	 * @param buffer
+	 *            the buffer holding the pack.
+	 * @throws IOException
+	 *             thrown when the buffer does not hold a valid pack.
+	 */
+	private LanguagePack(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer.order(ByteOrder.BIG_ENDIAN);
+		readHeader();
+	}
+
+	/**
+	 * Opens a pack by memory-mapping it.
+	 *
+	 * @param path
+	 *            the path to the pack.
+	 * @return a LanguagePack serving values from the mapped file.
+	 * @throws IOException
+	 *             thrown when the file cannot be read, or is not a pack.
+	 */
+	public static LanguagePack open(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return new LanguagePack(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Reads the header, the keys and the language directory. Values are left
+	 * in the buffer, but every offset is checked against its bounds, so that
+	 * reading them later cannot fail.
+	 *
+	 * @throws IOException
+	 *             thrown when the buffer does not hold a valid pack, or is
+	 *             truncated or corrupted.
+	 */
+	private void readHeader() throws IOException {
+		if (buffer.limit() < HEADER_LENGTH || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+			throw new IOException("Not a polyglot pack.");
+		}
+		sourceHash = new byte[HASH_LENGTH];
+		for (int i = 0; i < HASH_LENGTH; i++) {
+			sourceHash[i] = buffer.get(8 + i);
+		}
+		int keyCount = buffer.getInt(8 + HASH_LENGTH);
+		int languageCount = buffer.getInt(12 + HASH_LENGTH);
+		if (keyCount < 0 || languageCount < 0
+				|| HEADER_LENGTH + 4L * keyCount + (long) languageCount * (4 + 4L * keyCount) > buffer.limit()) {
+			throw new IOException("Truncated polyglot pack.");
+		}
+		keys = new ArrayList<String>(keyCount);
+		keyIndex = new HashMap<String, Integer>();
+		for (int i = 0; i < keyCount; i++) {
+			String key = string(checkString(buffer.getInt(HEADER_LENGTH + 4 * i)));
+			keys.add(key);
+			keyIndex.put(key, i);
+		}
+		languages = new LinkedHashMap<Locale, Language>();
+		int position = HEADER_LENGTH + 4 * keyCount;
+		for (int i = 0; i < languageCount; i++) {
+			Locale locale = new Locale(string(checkString(buffer.getInt(position))));
+			for (int j = 0; j < keyCount; j++) {
+				checkString(buffer.getInt(position + 4 + 4 * j));
+			}
+			languages.put(locale, new PackedLanguage(this, position + 4));
+			position += 4 + 4 * keyCount;
+		}
+	}
+
+	/**
+	 * Checks that a string table entry lies within the buffer.
+	 *
+	 * @param position
+	 *            the position of the entry in the buffer.
+	 * @return the position.
+	 * @throws IOException
+	 *             thrown when the entry, or its length, is out of bounds.
+	 */
+	private int checkString(int position) throws IOException {
+		if (position < HEADER_LENGTH || position > buffer.limit() - 4 || buffer.getInt(position) < 0
+				|| buffer.getInt(position) > buffer.limit() - position - 4) {
+			throw new IOException("Corrupted polyglot pack: string at " + position + " is out of bounds.");
+		}
+		return position;
+	}
+
+	/**
+	 * Reads a String from the string table.
+	 *
+	 * @param position
+	 *            the position of the String's entry in the buffer.
+	 * @return the decoded String.
+	 */
+	protected String string(int position) {
+		ByteBuffer entry = buffer.duplicate();
+		entry.position(position + 4);
+		byte[] bytes = new byte[buffer.getInt(position)];
+		entry.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Reads the value of a key for a language.
+	 *
+	 * @param offsets
+	 *            the position of the language's offset array.
+	 * @param key
+	 *            the key to read the value for.
+	 * @return the value, or null if the pack does not contain the key.
+	 */
+	protected String value(int offsets, String key) {
+		Integer index = keyIndex.get(key);
+		if (index == null) {
+			return null;
+		}
+		return string(buffer.getInt(offsets + 4 * index));
+	}
+
+	/**
+	 * @return a List<String> of the pack's keys, in the order they were
+	 *         written.
+	 */
+	protected List<String> keys() {
+		return Collections.unmodifiableList(keys);
+	}
+
+	/**
+	 * @return the Languages contained in this pack, by Locale.
+	 */
+	public Map<Locale, Language> languages() {
+		return Collections.unmodifiableMap(languages);
+	}
+
+	/**
+	 * @param original
+	 *            the source Language.
+	 * @return whether this pack was built from the provided source Language.
+	 */
+	public boolean matches(Language original) {
+		return Arrays.equals(sourceHash, hash(original));
+	}
+
+	/**
+	 * Computes the hash of a source Language. The hash does not depend on the
+	 * order of the Language's keys.
+	 *
+	 * @param original
+	 *            the source Language.
+	 * @return a SHA-256 hash of the Language's keys and values.
+	 */
+	protected static byte[] hash(Language original) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			List<String> keys = original.keys();
+			Collections.sort(keys);
+			for (String key : keys) {
+				digest.update(key.getBytes(StandardCharsets.UTF_8));
+				digest.update((byte) 0);
+				digest.update(original.get(key).getBytes(StandardCharsets.UTF_8));
+				digest.update((byte) 0);
+			}
+			return digest.digest();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Writes a pack to disk.
+	 *
+	 * @param path
+	 *            the path to write the pack to.
+	 * @param original
+	 *            the source Language the translations were made from.
+	 * @param translations
+	 *            the translated Languages, by Locale.
+	 * @throws IOException
+	 *             thrown when the pack cannot be written.
+	 */
+	public static void write(Path path, Language original, Map<Locale, Language> translations) throws IOException {
+		List<String> keys = original.keys();
+		StringTable table = new StringTable();
+		int[] keyOffsets = new int[keys.size()];
+		for (int i = 0; i < keys.size(); i++) {
+			keyOffsets[i] = table.add(keys.get(i));
+		}
+		List<int[]> languageOffsets = new ArrayList<int[]>();
+		for (Map.Entry<Locale, Language> entry : translations.entrySet()) {
+			int[] offsets = new int[keys.size() + 1];
+			offsets[0] = table.add(entry.getKey().getLanguage());
+			for (int i = 0; i < keys.size(); i++) {
+				String value = entry.getValue().get(keys.get(i));
+				offsets[i + 1] = table.add(value == null ? original.get(keys.get(i)) : value);
+			}
+			languageOffsets.add(offsets);
+		}
+		int tableStart = HEADER_LENGTH + 4 * keys.size() + 4 * (keys.size() + 1) * translations.size();
+		ByteBuffer output = ByteBuffer.allocate(tableStart + table.length());
+		output.putInt(MAGIC).putInt(VERSION).put(hash(original)).putInt(keys.size()).putInt(translations.size());
+		for (int offset : keyOffsets) {
+			output.putInt(tableStart + offset);
+		}
+		for (int[] offsets : languageOffsets) {
+			for (int offset : offsets) {
+				output.putInt(tableStart + offset);
+			}
+		}
+		table.writeTo(output);
+		Files.write(path, output.array());
+	}
+
+	/**
+	 * Accumulates distinct Strings while a pack is written. Each String is
+	 * stored once, however many languages use it.
+	 */
+	private static class StringTable {
+
+		private Map<String, Integer> offsets = new HashMap<String, Integer>();
+		private List<byte[]> entries = new ArrayList<byte[]>();
+		private int length;
+
+		/**
+		 * @param string
+		 *            the String to add.
+		 * @return the offset of the String's entry, relative to the start of
+		 *         the table.
+		 */
+		private int add(String string) {
+			Integer offset = offsets.get(string);
+			if (offset == null) {
+				byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+				offset = length;
+				offsets.put(string, offset);
+				entries.add(bytes);
+				length += 4 + bytes.length;
+			}
+			return offset;
+		}
+
+		/**
+		 * @return the length of the table, in bytes.
+		 */
+		private int length() {
+			return length;
+		}
+
+		/**
+		 * @param output
+		 *            the buffer to write the table to.
+		 */
+		private void writeTo(ByteBuffer output) {
+			for (byte[] bytes : entries) {
+				output.putInt(bytes.length).put(bytes);
+			}
+		}
+
+	}
+
+}
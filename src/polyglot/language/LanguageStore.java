@@ -0,0 +1,326 @@
+package polyglot.language;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+
+import polyglot.Case;
+
+/**
+ * This class holds polyglot's languages, independently of JavaFX.
+ *
+ * It holds references to: a Map of languages that have been translated into;
+ * the default Locale; the original Language supplied by the user; and a tool
+ * for converting between language codes and their display names.
+ *
+ * Languages are immutable once cached, and the Map holding them never blocks
+ * readers: any number of threads can look up values in any number of Locales
+ * at the same time. This makes the class suitable for server-side rendering,
+ * where each request may use a different Locale. No global state, such as the
+ * JVM's default Locale, is modified.
+ *
+ * Values can also be used as MessageFormat patterns. Each pattern is compiled
+ * once per Locale, and cached.
+ *
+ * Only one language is displayed at a time. Every other translated language is
+ * held as a CompactLanguage, whose values live in a ValueArena shared by all
+ * of the store's languages. A language is inflated when it is activated, and
+ * compacted again once another language is activated.
+ *
+ * @author Elliott Bolzan
+ *
+ */
+public class LanguageStore {
+
+	private static final String PROPERTIES = ".properties";
+
+	private Map<Locale, Language> languages;
+	private Map<Locale, Map<String, MessageFormat>> formats;
+	private Locale defaultLocale;
+	private Language originalLanguage;
+	private LanguageCodes languageCodes;
+	private List<String> keyOrder;
+	private Map<String, Integer> keyIndex;
+	private ValueArena arena;
+	private volatile Locale active;
+	private volatile boolean deflate;
+
+	/**
+	 * Create a LanguageStore.
+	 *
+	 * @param propertiesPath
+	 *            the path to the caller's default Properties file.
+	 * @param defaultLocale
+	 *            the caller's default Locale.
+	 */
+	public LanguageStore(String propertiesPath, Locale defaultLocale) {
+		this.defaultLocale = defaultLocale;
+		languages = new ConcurrentHashMap<Locale, Language>();
+		formats = new ConcurrentHashMap<Locale, Map<String, MessageFormat>>();
+		languageCodes = new LanguageCodes();
+		arena = new ValueArena();
+		active = defaultLocale;
+		languageFromBundle(propertiesPath);
+	}
+
+	/**
+	 * Creates a Language from the user-supplied ResourceBundle. This allows the
+	 * LanguageStore to ignore ResourceBundles once and for all.
+	 *
+	 * The ResourceBundle's Properties file is streamed straight into the
+	 * Language by a PropertiesReader, keeping its keys in order. If there is no
+	 * such file on the classpath, as with class-based or locale-specific
+	 * bundles, the ResourceBundle is loaded through ResourceBundle.getBundle
+	 * instead.
+	 *
+	 * @param propertiesPath
+	 *            the path to the caller's default ResourceBundle.
+	 */
+	private void languageFromBundle(String propertiesPath) {
+		Map<String, String> vocabulary;
+		URL file = LanguageStore.class.getClassLoader().getResource(propertiesPath.replace('.', '/') + PROPERTIES);
+		if (file != null) {
+			try {
+				vocabulary = PropertiesReader.read(file);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		} else {
+			vocabulary = new LinkedHashMap<String, String>();
+			ResourceBundle resources = ResourceBundle.getBundle(propertiesPath);
+			Enumeration<String> keys = resources.getKeys();
+			while (keys.hasMoreElements()) {
+				String key = keys.nextElement();
+				vocabulary.put(key, resources.getString(key));
+			}
+		}
+		originalLanguage = Language.adopt(vocabulary);
+		keyOrder = originalLanguage.keys();
+		keyIndex = new HashMap<String, Integer>();
+		for (int i = 0; i < keyOrder.size(); i++) {
+			keyIndex.put(keyOrder.get(i), i);
+		}
+		cache(defaultLocale, originalLanguage);
+	}
+
+	/**
+	 * Caches a Language, so it does not have to be translated again. Unless
+	 * its Locale is active, the Language is stored in compact form.
+	 *
+	 * The Language is compacted before the lock held by activate(Locale
+	 * locale) is taken, and the active Locale is checked again under it, so a
+	 * concurrent activation never leaves the active Language compacted.
+	 *
+	 * @param locale
+	 *            the Locale the Language is for.
+	 * @param language
+	 *            the Language to cache.
+	 */
+	public void cache(Locale locale, Language language) {
+		Language compacted = locale.equals(active) ? language : compact(language);
+		synchronized (this) {
+			languages.put(locale, locale.equals(active) ? language : compact(compacted));
+			formats.remove(locale);
+		}
+	}
+
+	/**
+	 * Activates a Locale: its Language is inflated, and the Language that was
+	 * previously active is compacted.
+	 *
+	 * @param locale
+	 *            the Locale to activate.
+	 */
+	public synchronized void activate(Locale locale) {
+		Locale previous = active;
+		active = locale;
+		Language language = languages.get(locale);
+		if (language instanceof CompactLanguage) {
+			languages.put(locale, ((CompactLanguage) language).inflate());
+		}
+		if (previous != null && !previous.equals(locale) && languages.containsKey(previous)) {
+			languages.put(previous, compact(languages.get(previous)));
+		}
+	}
+
+	/**
+	 * Sets whether inactive Languages are deflated. Deflated Languages take up
+	 * the least memory, but are slow to read until they are activated.
+	 *
+	 * @param deflate
+	 *            whether to deflate inactive Languages.
+	 */
+	public void setDeflate(boolean deflate) {
+		this.deflate = deflate;
+	}
+
+	/**
+	 * Converts a Language to its compact form. The original Language, and
+	 * Languages that are already compact or memory-mapped, are left as is.
+	 *
+	 * @param language
+	 *            the Language to compact.
+	 * @return the compact Language.
+	 */
+	private Language compact(Language language) {
+		if (language == originalLanguage || language instanceof CompactLanguage || language instanceof PackedLanguage) {
+			return language;
+		}
+		return new CompactLanguage(language, originalLanguage, keyOrder, keyIndex, arena, deflate);
+	}
+
+	/**
+	 * Provides the caller with a localized version of the value for the key
+	 * parameter. If the Locale has not been translated into, the original
+	 * value is returned.
+	 *
+	 * @param locale
+	 *            the Locale to look the value up in.
+	 * @param key
+	 *            the key from the Properties file.
+	 * @param textCase
+	 *            the case the text should be returned in.
+	 * @return a String representing a localized version of the value for the
+	 *         key.
+	 */
+	public String get(Locale locale, String key, Case textCase) {
+		Language language = languages.getOrDefault(locale, originalLanguage);
+		String value = language.get(key);
+		return textCase.convert(value);
+	}
+
+	/**
+	 * Provides the caller with a localized, formatted version of the value for
+	 * the key parameter. The value is used as a MessageFormat pattern, which is
+	 * compiled on first use and cached. If the Locale has not been translated
+	 * into, the original pattern is used.
+	 *
+	 * Translations are stored as plain text, as get(Locale locale, String key,
+	 * Case textCase) displays them: their apostrophes are escaped before they
+	 * are compiled.
+	 *
+	 * MessageFormat is not thread-safe: each call formats with its own copy of
+	 * the cached pattern, so concurrent callers never wait for one another.
+	 *
+	 * @param locale
+	 *            the Locale to look the pattern up in.
+	 * @param key
+	 *            the key from the Properties file.
+	 * @param textCase
+	 *            the case the text should be returned in.
+	 * @param arguments
+	 *            the arguments to format the pattern with.
+	 * @return a String representing a localized, formatted version of the
+	 *         value for the key.
+	 */
+	public String format(Locale locale, String key, Case textCase, Object... arguments) {
+		Locale patternLocale = languages.containsKey(locale) ? locale : defaultLocale;
+		MessageFormat format = formats.computeIfAbsent(patternLocale, (formatLocale) -> new ConcurrentHashMap<>())
+				.computeIfAbsent(key, (formatKey) -> compile(patternLocale, formatKey));
+		return textCase.convert(((MessageFormat) format.clone()).format(arguments));
+	}
+
+	/**
+	 * Compiles the value of a key as a MessageFormat pattern. Translated values
+	 * have their apostrophes escaped; original values, and values copied from
+	 * them untranslated, are already patterns.
+	 *
+	 * @param patternLocale
+	 *            the Locale to look the pattern up in.
+	 * @param key
+	 *            the key from the Properties file.
+	 * @return the compiled MessageFormat.
+	 */
+	private MessageFormat compile(Locale patternLocale, String key) {
+		String pattern = languages.getOrDefault(patternLocale, originalLanguage).get(key);
+		if (!patternLocale.equals(defaultLocale) && !pattern.equals(originalLanguage.get(key))) {
+			pattern = pattern.replace("'", "''");
+		}
+		return new MessageFormat(pattern, patternLocale);
+	}
+
+	/**
+	 * Provides the caller with the original version of the value for the key
+	 * parameter.
+	 *
+	 * @param key
+	 *            the key from the Properties file.
+	 * @return a String representing the original version of the value for the
+	 *         key.
+	 */
+	public String getOriginal(String key) {
+		return originalLanguage.get(key);
+	}
+
+	/**
+	 * @return the Language created from the user's default Properties file.
+	 */
+	public Language getOriginalLanguage() {
+		return originalLanguage;
+	}
+
+	/**
+	 * @return the caller's default Locale.
+	 */
+	public Locale getDefaultLocale() {
+		return defaultLocale;
+	}
+
+	/**
+	 * @return a List<String> representing the keys of the user's default
+	 *         Properties file.
+	 */
+	public List<String> keys() {
+		return new ArrayList<String>(keyOrder);
+	}
+
+	/**
+	 * @return a List<String> representing the values of the user's default
+	 *         Properties file. These are the values that are to be translated.
+	 */
+	public List<String> toTranslate() {
+		return originalLanguage.values();
+	}
+
+	/**
+	 * @param locale
+	 *            the specified Locale.
+	 * @return whether polyglot has already translated into that Locale or not.
+	 */
+	public boolean hasTranslated(Locale locale) {
+		return languages.containsKey(locale);
+	}
+
+	/**
+	 * Returns a language code for a given language display name.
+	 *
+	 * @param language
+	 *            the String representing a given language's display name.
+	 * @return the language's code in Google's Translate API.
+	 */
+	public String codeForLanguage(String language) {
+		return languageCodes.codeForLanguage(language);
+	}
+
+	/**
+	 * Returns language display names from language codes.
+	 *
+	 * @param codes
+	 *            the codes for which to find language names.
+	 * @return a List<String> of language display names.
+	 */
+	public List<String> languagesFromCodes(List<String> codes) {
+		return languageCodes.languagesFromCodes(codes);
+	}
+
+}
@@ -0,0 +1,53 @@
+package polyglot.language;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ * A Language whose values live in a memory-mapped LanguagePack.
+ *
+ * Nothing is copied onto the heap when the pack is opened: each value is
+ * decoded from the mapped buffer when it is requested.
+ *
+ * @author Elliott Bolzan
+ *
+ */
+public class PackedLanguage extends Language {
+
+	private LanguagePack pack;
+	private int offsets;
+
+	/**
+	 * Creates a PackedLanguage.
+	 *
+	 * @param pack
+	 *            the pack holding this language's values.
+	 * @param offsets
+	 *            the position of this language's offset array in the pack.
+	 */
+	protected PackedLanguage(LanguagePack pack, int offsets) {
+		this.pack = pack;
+		this.offsets = offsets;
+	}
+
+	@Override
+	protected String get(String key) {
+		return pack.value(offsets, key);
+	}
+
+	@Override
+	protected List<String> keys() {
+		return new ArrayList<String>(pack.keys());
+	}
+
+	@Override
+	protected List<String> values() {
+		List<String> values = new ArrayList<String>();
+		for (String key : pack.keys()) {
+			values.add(get(key));
+		}
+		return values;
+	}
+
+}
@@ -0,0 +1,294 @@
+package polyglot.language;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ *
+ * This class reads Properties files in a single streaming pass, straight into
+ * a Map that keeps the keys in the order they appear in the file.
+ *
+ * Files are read through a channel and decoded in fixed-size buffers: no
+ * intermediate Properties or ResourceBundle object is built, and the whole file
+ * is never held in memory at once. The format is that of
+ * java.util.Properties: comments, continuation lines, the "=", ":" and
+ * whitespace separators, and escapes, including \\uXXXX, are supported.
+ *
+ * As with PropertyResourceBundle, files are read as UTF-8, and read again as
+ * ISO-8859-1 if they are not valid UTF-8.
+ *
+ * @author Elliott Bolzan
+ *
+ */
+public class PropertiesReader {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int NONE = -2;
+
+	private ReadableByteChannel channel;
+	private CharsetDecoder decoder;
+	private ByteBuffer bytes;
+	private CharBuffer chars;
+	private boolean endOfInput;
+	private boolean decoded;
+	private int pushedBack;
+	private boolean escaped;
+
+	/**
+	 * Creates a PropertiesReader.
+	 *
+	 * @param channel
+	 *            the channel to read from.
+	 * @param charset
+	 *            the Charset the file is encoded in.
+	 */
+	private PropertiesReader(ReadableByteChannel channel, Charset charset) {
+		this.channel = channel;
+		decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPORT)
+				.onUnmappableCharacter(CodingErrorAction.REPORT);
+		bytes = ByteBuffer.allocate(BUFFER_SIZE);
+		chars = CharBuffer.allocate(BUFFER_SIZE);
+		chars.flip();
+		pushedBack = NONE;
+	}
+
+	/**
+	 * Reads a Properties file.
+	 *
+	 * @param url
+	 *            the location of the file, such as a classpath resource.
+	 * @return the file's keys and values, in the order they appear.
+	 * @throws IOException
+	 *             thrown when the file cannot be read.
+	 * @throws IllegalArgumentException
+	 *             thrown when the file contains a malformed \\uXXXX escape.
+	 */
+	public static Map<String, String> read(URL url) throws IOException {
+		try {
+			return read(url, StandardCharsets.UTF_8);
+		} catch (CharacterCodingException e) {
+			return read(url, StandardCharsets.ISO_8859_1);
+		}
+	}
+
+	/**
+	 * @param url
+	 *            the location of the file.
+	 * @param charset
+	 *            the Charset the file is encoded in.
+	 * @return the file's keys and values, in the order they appear.
+	 * @throws IOException
+	 *             thrown when the file cannot be read, or decoded.
+	 */
+	private static Map<String, String> read(URL url, Charset charset) throws IOException {
+		try (ReadableByteChannel channel = Channels.newChannel(url.openStream())) {
+			return new PropertiesReader(channel, charset).entries();
+		}
+	}
+
+	/**
+	 * Reads every entry in the file.
+	 *
+	 * @return the entries, in the order they appear.
+	 * @throws IOException
+	 *             thrown when the file cannot be read, or decoded.
+	 */
+	private Map<String, String> entries() throws IOException {
+		Map<String, String> entries = new LinkedHashMap<String, String>();
+		StringBuilder key = new StringBuilder();
+		StringBuilder value = new StringBuilder();
+		int c = raw();
+		while (true) {
+			while (isWhitespace(c) || isLineEnd(c)) {
+				c = raw();
+			}
+			if (c == -1) {
+				break;
+			}
+			if (c == '#' || c == '!') {
+				while (c != -1 && !isLineEnd(c)) {
+					c = raw();
+				}
+				continue;
+			}
+			pushBack(c);
+			key.setLength(0);
+			value.setLength(0);
+			c = logical();
+			while (c != -1 && (escaped || !isLineEnd(c) && !isWhitespace(c) && c != '=' && c != ':')) {
+				key.append((char) c);
+				c = logical();
+			}
+			while (!escaped && isWhitespace(c)) {
+				c = logical();
+			}
+			if (!escaped && (c == '=' || c == ':')) {
+				c = logical();
+				while (!escaped && isWhitespace(c)) {
+					c = logical();
+				}
+			}
+			while (c != -1 && (escaped || !isLineEnd(c))) {
+				value.append((char) c);
+				c = logical();
+			}
+			entries.put(key.toString(), value.toString());
+			c = raw();
+		}
+		return entries;
+	}
+
+	/**
+	 * Reads the next character of the current entry. Continuation lines are
+	 * joined, and escapes are decoded: escaped sets whether the character was
+	 * escaped, and so cannot end a key or a line.
+	 *
+	 * @return the character, or -1 at the end of the file.
+	 * @throws IOException
+	 *             thrown when the file cannot be read, or decoded.
+	 */
+	private int logical() throws IOException {
+		while (true) {
+			escaped = false;
+			int c = raw();
+			if (c != '\\') {
+				return c;
+			}
+			c = raw();
+			if (c == -1) {
+				return -1;
+			}
+			if (isLineEnd(c)) {
+				if (c == '\r') {
+					int next = raw();
+					if (next != '\n') {
+						pushBack(next);
+					}
+				}
+				do {
+					c = raw();
+				} while (isWhitespace(c));
+				pushBack(c);
+				continue;
+			}
+			escaped = true;
+			switch (c) {
+			case 't':
+				return '\t';
+			case 'n':
+				return '\n';
+			case 'r':
+				return '\r';
+			case 'f':
+				return '\f';
+			case 'u':
+				return unicode();
+			default:
+				return c;
+			}
+		}
+	}
+
+	/**
+	 * Reads the four hexadecimal digits of a \\uXXXX escape.
+	 *
+	 * @return the escaped character.
+	 * @throws IOException
+	 *             thrown when the file cannot be read, or decoded.
+	 */
+	private int unicode() throws IOException {
+		int value = 0;
+		for (int i = 0; i < 4; i++) {
+			int digit = Character.digit(raw(), 16);
+			if (digit < 0) {
+				throw new IllegalArgumentException("Malformed \\uxxxx encoding.");
+			}
+			value = (value << 4) | digit;
+		}
+		return value;
+	}
+
+	/**
+	 * @return the next decoded character in the file, or -1 at its end.
+	 * @throws IOException
+	 *             thrown when the file cannot be read, or decoded.
+	 */
+	private int raw() throws IOException {
+		if (pushedBack != NONE) {
+			int c = pushedBack;
+			pushedBack = NONE;
+			return c;
+		}
+		if (!chars.hasRemaining() && !fill()) {
+			return -1;
+		}
+		return chars.get();
+	}
+
+	/**
+	 * @param c
+	 *            a character to return from the next call to raw().
+	 */
+	private void pushBack(int c) {
+		pushedBack = c;
+	}
+
+	/**
+	 * Decodes the next block of the file.
+	 *
+	 * @return whether characters were decoded.
+	 * @throws IOException
+	 *             thrown when the file cannot be read, or decoded.
+	 */
+	private boolean fill() throws IOException {
+		chars.clear();
+		while (chars.position() == 0 && !decoded) {
+			if (!endOfInput && channel.read(bytes) < 0) {
+				endOfInput = true;
+			}
+			bytes.flip();
+			CoderResult result = decoder.decode(bytes, chars, endOfInput);
+			if (result.isError()) {
+				result.throwException();
+			}
+			bytes.compact();
+			if (endOfInput && result.isUnderflow()) {
+				decoder.flush(chars);
+				decoded = true;
+			}
+		}
+		chars.flip();
+		return chars.hasRemaining();
+	}
+
+	/**
+	 * @param c
+	 *            a character.
+	 * @return whether the character separates keys from values.
+	 */
+	private boolean isWhitespace(int c) {
+		return c == ' ' || c == '\t' || c == '\f';
+	}
+
+	/**
+	 * @param c
+	 *            a character.
+	 * @return whether the character ends a line.
+	 */
+	private boolean isLineEnd(int c) {
+		return c == '\n' || c == '\r';
+	}
+
+}
@@ -0,0 +1,184 @@
+package polyglot.language;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ *
+ * A shared, append-only store of UTF-8 encoded values.
+ *
+ * Inactive languages keep their values here rather than as Strings: each
+ * value costs its UTF-8 bytes and a four-byte length, instead of a full String
+ * object. Identical values are only stored once, however many languages use
+ * them, and are referred to by their offset in the arena.
+ *
+ * Values are never removed. Offsets remain valid as the arena grows, so
+ * Languages referring to the arena can be read from any thread once they have
+ * been published.
+ *
+ * @author Elliott Bolzan
+ *
+ */
+public class ValueArena {
+
+	private static final int INITIAL_CAPACITY = 4096;
+	private static final int INITIAL_SLOTS = 256;
+
+	private volatile byte[] data;
+	private int length;
+	private int[] slots;
+	private int count;
+
+	/**
+	 * Creates an empty ValueArena.
+	 */
+	public ValueArena() {
+		data = new byte[INITIAL_CAPACITY];
+		slots = new int[INITIAL_SLOTS];
+	}
+
+	/**
+	 * Adds a value to the arena, unless an identical value is already stored.
+	 *
+	 * @param value
+	 *            the value to add.
+	 * @return the offset of the value in the arena.
+	 */
+	protected synchronized int add(String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		int slot = find(bytes);
+		if (slots[slot] != 0) {
+			return slots[slot] - 1;
+		}
+		int offset = append(bytes);
+		slots[slot] = offset + 1;
+		if (++count * 2 > slots.length) {
+			rehash();
+		}
+		return offset;
+	}
+
+	/**
+	 * Reads a value from the arena.
+	 *
+	 * @param offset
+	 *            the offset returned when the value was added.
+	 * @return the value.
+	 */
+	protected String get(int offset) {
+		byte[] bytes = data;
+		return new String(bytes, offset + 4, readLength(bytes, offset), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return the number of bytes used by the arena's values.
+	 */
+	public synchronized int size() {
+		return length;
+	}
+
+	/**
+	 * Finds the slot holding a value, or the empty slot it should be placed
+	 * in.
+	 *
+	 * @param bytes
+	 *            the UTF-8 bytes of the value.
+	 * @return the index of the slot.
+	 */
+	private int find(byte[] bytes) {
+		int mask = slots.length - 1;
+		int slot = Arrays.hashCode(bytes) & mask;
+		while (slots[slot] != 0 && !matches(slots[slot] - 1, bytes)) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * @param offset
+	 *            the offset of a stored value.
+	 * @param bytes
+	 *            the UTF-8 bytes of another value.
+	 * @return whether the stored value and the other value are identical.
+	 */
+	private boolean matches(int offset, byte[] bytes) {
+		if (readLength(data, offset) != bytes.length) {
+			return false;
+		}
+		for (int i = 0; i < bytes.length; i++) {
+			if (data[offset + 4 + i] != bytes[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Appends a value to the end of the arena, growing it if necessary.
+	 *
+	 * @param bytes
+	 *            the UTF-8 bytes of the value.
+	 * @return the offset of the value.
+	 */
+	private int append(byte[] bytes) {
+		byte[] target = data;
+		if (length + 4 + bytes.length > target.length) {
+			target = Arrays.copyOf(target, Math.max(target.length * 2, length + 4 + bytes.length));
+		}
+		int offset = length;
+		target[offset] = (byte) (bytes.length >>> 24);
+		target[offset + 1] = (byte) (bytes.length >>> 16);
+		target[offset + 2] = (byte) (bytes.length >>> 8);
+		target[offset + 3] = (byte) bytes.length;
+		System.arraycopy(bytes, 0, target, offset + 4, bytes.length);
+		length += 4 + bytes.length;
+		data = target;
+		return offset;
+	}
+
+	/**
+	 * Doubles the number of slots, and places every value again.
+	 */
+	private void rehash() {
+		int[] previous = slots;
+		slots = new int[previous.length * 2];
+		int mask = slots.length - 1;
+		for (int entry : previous) {
+			if (entry != 0) {
+				int offset = entry - 1;
+				int slot = hash(offset) & mask;
+				while (slots[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				slots[slot] = entry;
+			}
+		}
+	}
+
+	/**
+	 * @param offset
+	 *            the offset of a stored value.
+	 * @return the hash of the value's bytes, as computed by Arrays.hashCode.
+	 */
+	private int hash(int offset) {
+		int result = 1;
+		int end = offset + 4 + readLength(data, offset);
+		for (int i = offset + 4; i < end; i++) {
+			result = 31 * result + data[i];
+		}
+		return result;
+	}
+
+	/**
+	 * @param bytes
+	 *            the arena's data.
+	 * @param offset
+	 *            the offset of a stored value.
+	 * @return the length of the value, in bytes.
+	 */
+	private static int readLength(byte[] bytes, int offset) {
+		return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16) | ((bytes[offset + 2] & 0xFF) << 8)
+				| (bytes[offset + 3] & 0xFF);
+	}
+
+}
@@ -0,0 +1,178 @@
+package polyglot.tools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import polyglot.Polyglot;
+import polyglot.PolyglotException;
+import polyglot.TranslateAPI;
+
+/**
+ *
+ * A load generator for polyglot, exercising the full TranslateAPI code path
+ * against a local TranslateServer.
+ *
+ * Several threads share a single Polyglot object, and repeatedly call
+ * setLanguage(String language) and languages(). Once every thread is done,
+ * the throughput and the median and 99th percentile latencies of each call
+ * are reported.
+ *
+ * Usage: LoadGenerator pathToResourceBundle [threads] [iterations]
+ * [latencyMillis] [maxRequestsPerSecond]
+ *
+ * @author Elliott Bolzan
+ *
+ */
+public class LoadGenerator {
+
+	private static final String API_KEY = "local";
+	private static final List<String> LANGUAGES = Arrays.asList("French", "German", "Spanish", "Italian",
+			"Portuguese", "Dutch", "Swedish", "Polish", "Japanese", "Korean");
+
+	private Polyglot polyglot;
+	private int threads;
+	private int iterations;
+
+	/**
+	 * Creates a LoadGenerator.
+	 *
+	 * @param polyglot
+	 *            the Polyglot object to call.
+	 * @param threads
+	 *            the number of threads calling it concurrently.
+	 * @param iterations
+	 *            the number of calls each thread makes.
+	 */
+	public LoadGenerator(Polyglot polyglot, int threads, int iterations) {
+		this.polyglot = polyglot;
+		this.threads = threads;
+		this.iterations = iterations;
+	}
+
+	/**
+	 * Runs the load, and prints a report.
+	 *
+	 * @throws Exception
+	 *             thrown when a thread is interrupted.
+	 */
+	public void run() throws Exception {
+		List<Long> switches = Collections.synchronizedList(new ArrayList<Long>());
+		List<Long> listings = Collections.synchronizedList(new ArrayList<Long>());
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<Integer>> failures = new ArrayList<Future<Integer>>();
+		long start = System.nanoTime();
+		for (int i = 0; i < threads; i++) {
+			failures.add(executor.submit(() -> load(switches, listings)));
+		}
+		int failed = 0;
+		for (Future<Integer> future : failures) {
+			failed += future.get();
+		}
+		long elapsed = System.nanoTime() - start;
+		executor.shutdown();
+		System.out.println(report("setLanguage", switches, elapsed));
+		System.out.println(report("languages", listings, elapsed));
+		System.out.println(failed + " calls failed");
+	}
+
+	/**
+	 * The work done by a single thread.
+	 *
+	 * @param switches
+	 *            the List to record setLanguage latencies in.
+	 * @param listings
+	 *            the List to record languages latencies in.
+	 * @return the number of calls that failed.
+	 */
+	private int load(List<Long> switches, List<Long> listings) {
+		int failed = 0;
+		for (int i = 0; i < iterations; i++) {
+			long start = System.nanoTime();
+			try {
+				if (i % 2 == 0) {
+					polyglot.setLanguage(LANGUAGES.get(ThreadLocalRandom.current().nextInt(LANGUAGES.size())));
+					switches.add(System.nanoTime() - start);
+				} else {
+					polyglot.languages();
+					listings.add(System.nanoTime() - start);
+				}
+			} catch (PolyglotException e) {
+				failed++;
+			}
+		}
+		return failed;
+	}
+
+	/**
+	 * @param name
+	 *            the name of the call.
+	 * @param latencies
+	 *            the latencies recorded for the call, in nanoseconds.
+	 * @param elapsed
+	 *            the duration of the run, in nanoseconds.
+	 * @return a line describing the call's throughput and latencies.
+	 */
+	private String report(String name, List<Long> latencies, long elapsed) {
+		List<Long> sorted = new ArrayList<Long>(latencies);
+		Collections.sort(sorted);
+		return String.format("%-12s %8d calls %10.1f calls/s   p50 %8.2f ms   p99 %8.2f ms", name, sorted.size(),
+				sorted.size() / (elapsed / 1e9), percentile(sorted, 0.50), percentile(sorted, 0.99));
+	}
+
+	/**
+	 * @param sorted
+	 *            latencies in nanoseconds, in ascending order.
+	 * @param percentile
+	 *            the percentile, between 0 and 1.
+	 * @return the latency at the percentile, in milliseconds.
+	 */
+	private double percentile(List<Long> sorted, double percentile) {
+		if (sorted.isEmpty()) {
+			return 0;
+		}
+		int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+		return sorted.get(Math.max(index, 0)) / 1e6;
+	}
+
+	/**
+	 * Starts a TranslateServer, and runs the load against it.
+	 *
+	 * @param args
+	 *            the path to the ResourceBundle to translate, and optionally
+	 *            the number of threads, the number of calls per thread, the
+	 *            server's latency in milliseconds and the number of requests it
+	 *            accepts each second.
+	 * @throws Exception
+	 *             thrown when the server cannot be started.
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: LoadGenerator pathToResourceBundle [threads] [iterations] [latencyMillis] "
+					+ "[maxRequestsPerSecond]");
+			System.exit(1);
+		}
+		TranslateServer server = new TranslateServer(0);
+		server.setLatency(args.length > 3 ? Long.parseLong(args[3]) : 50);
+		server.setMaxRequestsPerSecond(args.length > 4 ? Integer.parseInt(args[4]) : 0);
+		server.start();
+		try {
+			TranslateAPI translateAPI = new TranslateAPI(API_KEY, server.getRootUrl());
+			Polyglot polyglot = new Polyglot(translateAPI, args[0], new Locale("en"));
+			int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+			int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+			new LoadGenerator(polyglot, threads, iterations).run();
+			System.out.println("Server: " + server.getStatistics());
+			System.out.println("Control: " + translateAPI.controlState());
+		} finally {
+			server.stop();
+		}
+	}
+
+}
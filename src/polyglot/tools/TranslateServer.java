@@ -0,0 +1,411 @@
+package polyglot.tools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ *
+ * A local stand-in for version 2 of Google's Translate API.
+ *
+ * The server answers the same "translations" and "languages" requests as
+ * Google's, in the same format, so that TranslateAPI can be pointed at it
+ * using TranslateAPI(String APIKey, String rootUrl). Translations are fake:
+ * each phrase is returned prefixed with its target language code.
+ *
+ * To reproduce real-world conditions, the server can be configured to respond
+ * slowly, to reject requests above a certain rate with Google's rate limit
+ * error, and to reject requests carrying too many characters.
+ *
+ * Usage: TranslateServer port [latencyMillis] [maxRequestsPerSecond]
+ * [maxCharactersPerRequest]
+ *
+ * @author Elliott Bolzan
+ *
+ */
+public class TranslateServer {
+
+	private static final String SERVICE_PATH = "/language/translate/v2";
+	private static final String LANGUAGE_CODES_PATH = "polyglot/resources/LanguageCodes";
+	private static final String TEXT_FORMAT = "text";
+	private static final String GZIP_ENCODING = "gzip";
+
+	private HttpServer server;
+	private ExecutorService executor;
+	private volatile long latency;
+	private volatile int maxRequestsPerSecond;
+	private volatile int maxCharactersPerRequest;
+	private long window;
+	private int requestsInWindow;
+	private AtomicLong served;
+	private AtomicLong throttled;
+	private AtomicLong rejected;
+	private AtomicLong characters;
+
+	/**
+	 * Creates a TranslateServer. The server does not accept requests until
+	 * start() is called.
+	 *
+	 * @param port
+	 *            the port to listen on, or 0 to pick any free port.
+	 * @throws IOException
+	 *             thrown when the port cannot be bound.
+	 */
+	public TranslateServer(int port) throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+		executor = Executors.newCachedThreadPool();
+		server.setExecutor(executor);
+		server.createContext(SERVICE_PATH, this::handle);
+		served = new AtomicLong();
+		throttled = new AtomicLong();
+		rejected = new AtomicLong();
+		characters = new AtomicLong();
+	}
+
+	/**
+	 * Sets the time the server waits before answering each request.
+	 *
+	 * @param latency
+	 *            the latency, in milliseconds.
+	 */
+	public void setLatency(long latency) {
+		this.latency = latency;
+	}
+
+	/**
+	 * Sets the number of requests accepted each second. Further requests are
+	 * rejected with Google's rate limit error.
+	 *
+	 * @param maxRequestsPerSecond
+	 *            the number of requests accepted each second, or 0 for no
+	 *            limit.
+	 */
+	public void setMaxRequestsPerSecond(int maxRequestsPerSecond) {
+		this.maxRequestsPerSecond = maxRequestsPerSecond;
+	}
+
+	/**
+	 * Sets the number of characters accepted in a single translation request.
+	 * Larger requests are rejected.
+	 *
+	 * @param maxCharactersPerRequest
+	 *            the number of characters accepted, or 0 for no limit.
+	 */
+	public void setMaxCharactersPerRequest(int maxCharactersPerRequest) {
+		this.maxCharactersPerRequest = maxCharactersPerRequest;
+	}
+
+	/**
+	 * Starts accepting requests.
+	 */
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * Stops accepting requests.
+	 */
+	public void stop() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	/**
+	 * @return the root URL to provide to TranslateAPI.
+	 */
+	public String getRootUrl() {
+		return "http://localhost:" + server.getAddress().getPort() + "/";
+	}
+
+	/**
+	 * @return a summary of the requests handled so far.
+	 */
+	public String getStatistics() {
+		return String.format("%d served, %d throttled, %d rejected, %d characters translated", served.get(),
+				throttled.get(), rejected.get(), characters.get());
+	}
+
+	/**
+	 * Handles a request to the service.
+	 *
+	 * @param exchange
+	 *            the request and its response.
+	 * @throws IOException
+	 *             thrown when the request cannot be read or answered.
+	 */
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			Map<String, List<String>> parameters = parameters(exchange);
+			sleep();
+			if (!admit()) {
+				throttled.incrementAndGet();
+				error(exchange, 403, "userRateLimitExceeded", "User Rate Limit Exceeded");
+			} else if (exchange.getRequestURI().getPath().endsWith("/languages")) {
+				served.incrementAndGet();
+				respond(exchange, 200, languages());
+			} else {
+				translations(exchange, parameters);
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Answers a translation request.
+	 *
+	 * @param exchange
+	 *            the request and its response.
+	 * @param parameters
+	 *            the request's parameters.
+	 * @throws IOException
+	 *             thrown when the response cannot be written.
+	 */
+	private void translations(HttpExchange exchange, Map<String, List<String>> parameters) throws IOException {
+		List<String> phrases = parameters.getOrDefault("q", Collections.emptyList());
+		String target = first(parameters, "target");
+		if (target == null || phrases.isEmpty()) {
+			rejected.incrementAndGet();
+			error(exchange, 400, "required", "Required parameter: " + (target == null ? "target" : "q"));
+			return;
+		}
+		int length = phrases.stream().mapToInt(String::length).sum();
+		if (maxCharactersPerRequest > 0 && length > maxCharactersPerRequest) {
+			rejected.incrementAndGet();
+			error(exchange, 413, "invalid", "Request payload size exceeds the limit");
+			return;
+		}
+		boolean html = !TEXT_FORMAT.equals(first(parameters, "format"));
+		List<Object> translations = new ArrayList<Object>();
+		for (String phrase : phrases) {
+			String translated = "[" + target + "] " + phrase;
+			Map<String, Object> translation = new HashMap<String, Object>();
+			translation.put("translatedText", html ? StringEscapeUtils.escapeHtml4(translated) : translated);
+			if (first(parameters, "source") == null) {
+				translation.put("detectedSourceLanguage", "en");
+			}
+			translations.add(translation);
+		}
+		served.incrementAndGet();
+		characters.addAndGet(length);
+		respond(exchange, 200, Collections.singletonMap("translations", translations));
+	}
+
+	/**
+	 * @return the body of a languages response, listing every language polyglot
+	 *         knows of.
+	 */
+	private Map<String, Object> languages() {
+		List<Object> languages = new ArrayList<Object>();
+		for (String code : Collections.list(ResourceBundle.getBundle(LANGUAGE_CODES_PATH).getKeys())) {
+			languages.add(Collections.singletonMap("language", code));
+		}
+		return Collections.singletonMap("languages", languages);
+	}
+
+	/**
+	 * @return whether the request fits within the rate limit.
+	 */
+	private synchronized boolean admit() {
+		if (maxRequestsPerSecond <= 0) {
+			return true;
+		}
+		long second = System.currentTimeMillis() / 1000;
+		if (second != window) {
+			window = second;
+			requestsInWindow = 0;
+		}
+		return ++requestsInWindow <= maxRequestsPerSecond;
+	}
+
+	/**
+	 * Waits for the configured latency.
+	 */
+	private void sleep() {
+		if (latency > 0) {
+			try {
+				Thread.sleep(latency);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Writes a response, wrapped in a "data" object as Google's are.
+	 *
+	 * @param exchange
+	 *            the request and its response.
+	 * @param status
+	 *            the HTTP status code.
+	 * @param data
+	 *            the body of the response.
+	 * @throws IOException
+	 *             thrown when the response cannot be written.
+	 */
+	private void respond(HttpExchange exchange, int status, Object data) throws IOException {
+		write(exchange, status, Collections.singletonMap("data", data));
+	}
+
+	/**
+	 * Writes an error, in the format used by Google's APIs.
+	 *
+	 * @param exchange
+	 *            the request and its response.
+	 * @param status
+	 *            the HTTP status code.
+	 * @param reason
+	 *            the reason for the error, such as "userRateLimitExceeded".
+	 * @param message
+	 *            a description of the error.
+	 * @throws IOException
+	 *             thrown when the response cannot be written.
+	 */
+	private void error(HttpExchange exchange, int status, String reason, String message) throws IOException {
+		Map<String, Object> detail = new HashMap<String, Object>();
+		detail.put("domain", status == 403 ? "usageLimits" : "global");
+		detail.put("reason", reason);
+		detail.put("message", message);
+		Map<String, Object> error = new HashMap<String, Object>();
+		error.put("errors", Collections.singletonList(detail));
+		error.put("code", status);
+		error.put("message", message);
+		write(exchange, status, Collections.singletonMap("error", error));
+	}
+
+	/**
+	 * Writes a JSON body.
+	 *
+	 * @param exchange
+	 *            the request and its response.
+	 * @param status
+	 *            the HTTP status code.
+	 * @param body
+	 *            the object to serialize.
+	 * @throws IOException
+	 *             thrown when the response cannot be written.
+	 */
+	private void write(HttpExchange exchange, int status, Object body) throws IOException {
+		byte[] bytes = JacksonFactory.getDefaultInstance().toByteArray(body);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream output = exchange.getResponseBody()) {
+			output.write(bytes);
+		}
+	}
+
+	/**
+	 * Reads a request's parameters, from its query string and, for POST
+	 * requests, from its form-encoded body. Google's client sends long GET
+	 * requests this way, gzipped.
+	 *
+	 * @param exchange
+	 *            the request.
+	 * @return the parameters, by name.
+	 * @throws IOException
+	 *             thrown when the body cannot be read.
+	 */
+	private Map<String, List<String>> parameters(HttpExchange exchange) throws IOException {
+		Map<String, List<String>> parameters = new HashMap<String, List<String>>();
+		parse(exchange.getRequestURI().getRawQuery(), parameters);
+		if ("POST".equals(exchange.getRequestMethod())) {
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			try (InputStream input = GZIP_ENCODING.equalsIgnoreCase(exchange.getRequestHeaders().getFirst(
+					"Content-Encoding")) ? new GZIPInputStream(exchange.getRequestBody()) : exchange.getRequestBody()) {
+				byte[] buffer = new byte[4096];
+				int read;
+				while ((read = input.read(buffer)) > 0) {
+					body.write(buffer, 0, read);
+				}
+			}
+			parse(new String(body.toByteArray(), StandardCharsets.UTF_8), parameters);
+		}
+		return parameters;
+	}
+
+	/**
+	 * Parses a form-encoded String into parameters.
+	 *
+	 * @param encoded
+	 *            the encoded parameters, or null.
+	 * @param parameters
+	 *            the Map to add parameters to.
+	 * @throws UnsupportedEncodingException
+	 *             never thrown, UTF-8 being always supported.
+	 */
+	private void parse(String encoded, Map<String, List<String>> parameters) throws UnsupportedEncodingException {
+		if (encoded == null || encoded.isEmpty()) {
+			return;
+		}
+		for (String pair : encoded.split("&")) {
+			int separator = pair.indexOf('=');
+			String name = URLDecoder.decode(separator < 0 ? pair : pair.substring(0, separator), "UTF-8");
+			String value = separator < 0 ? "" : URLDecoder.decode(pair.substring(separator + 1), "UTF-8");
+			parameters.computeIfAbsent(name, (key) -> new ArrayList<String>()).add(value);
+		}
+	}
+
+	/**
+	 * @param parameters
+	 *            a request's parameters.
+	 * @param name
+	 *            the name of a parameter.
+	 * @return the parameter's first value, or null if it is absent.
+	 */
+	private String first(Map<String, List<String>> parameters, String name) {
+		List<String> values = parameters.get(name);
+		return values == null || values.isEmpty() ? null : values.get(0);
+	}
+
+	/**
+	 * Runs the server until the process is stopped.
+	 *
+	 * @param args
+	 *            the port, and optionally the latency in milliseconds, the
+	 *            number of requests accepted each second, and the number of
+	 *            characters accepted per request.
+	 * @throws IOException
+	 *             thrown when the server cannot be started.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: TranslateServer port [latencyMillis] [maxRequestsPerSecond] "
+					+ "[maxCharactersPerRequest]");
+			System.exit(1);
+		}
+		TranslateServer server = new TranslateServer(Integer.parseInt(args[0]));
+		if (args.length > 1) {
+			server.setLatency(Long.parseLong(args[1]));
+		}
+		if (args.length > 2) {
+			server.setMaxRequestsPerSecond(Integer.parseInt(args[2]));
+		}
+		if (args.length > 3) {
+			server.setMaxCharactersPerRequest(Integer.parseInt(args[3]));
+		}
+		server.start();
+		System.out.println("Listening on " + server.getRootUrl());
+	}
+
+}